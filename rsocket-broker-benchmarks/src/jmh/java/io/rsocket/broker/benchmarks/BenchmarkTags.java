@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+
+/**
+ * Tag sets and allocators shared by the codec benchmarks.
+ */
+final class BenchmarkTags {
+
+	private static final List<WellKnownKey> WELL_KNOWN_KEYS = new ArrayList<>();
+
+	static {
+		for (WellKnownKey key : WellKnownKey.values()) {
+			if (key.getIdentifier() > 0) {
+				WELL_KNOWN_KEYS.add(key);
+			}
+		}
+	}
+
+	enum KeyType {
+		/** Well known keys, custom keys once all well known keys are used. */
+		WELL_KNOWN,
+		CUSTOM
+	}
+
+	enum ValueType {
+		ASCII,
+		MULTI_BYTE
+	}
+
+	enum AllocatorType {
+		POOLED(PooledByteBufAllocator.DEFAULT),
+		UNPOOLED(UnpooledByteBufAllocator.DEFAULT);
+
+		private final ByteBufAllocator allocator;
+
+		AllocatorType(ByteBufAllocator allocator) {
+			this.allocator = allocator;
+		}
+
+		ByteBufAllocator allocator() {
+			return this.allocator;
+		}
+	}
+
+	private BenchmarkTags() {
+	}
+
+	static Tags create(int count, KeyType keyType, ValueType valueType) {
+		Tags.Builder<?> builder = Tags.builder();
+		for (int i = 0; i < count; i++) {
+			String value = valueType == ValueType.ASCII ? "value-" + i : "värde-" + i + "-値";
+			if (keyType == KeyType.WELL_KNOWN && i < WELL_KNOWN_KEYS.size()) {
+				builder.with(WELL_KNOWN_KEYS.get(i), value);
+			}
+			else {
+				builder.with("custom-key-" + i, value);
+			}
+		}
+		return builder.buildTags();
+	}
+
+}
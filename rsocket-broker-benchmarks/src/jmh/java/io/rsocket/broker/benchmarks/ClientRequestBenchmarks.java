@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.SocketAcceptor;
+import io.rsocket.broker.client.AddressTemplate;
+import io.rsocket.broker.client.BrokerRSocketClient;
+import io.rsocket.broker.client.BrokerRSocketConnector;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.MimeTypes;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import io.rsocket.broker.frames.AddressFlyweight;
+import io.rsocket.core.RSocketClient;
+import io.rsocket.core.RSocketConnector;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.metadata.CompositeMetadataCodec;
+import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Full outbound request path of a client over local transport against an echo
+ * responder: address metadata, composite metadata, the interaction itself and the
+ * decoded response. Throughput gives ops/s, sample time gives the p50/p99/p999
+ * latencies and the gc profiler reports bytes allocated per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ClientRequestBenchmarks {
+
+	private static final String SERVICE_NAME = "echo";
+
+	private static final int STREAM_LENGTH = 8;
+
+	private static final String COMPOSITE_MIME_TYPE = WellKnownMimeType.MESSAGE_RSOCKET_COMPOSITE_METADATA.getString();
+
+	public enum ClientType {
+		/** {@link BrokerRSocketClient} encoding the address on every request. */
+		BROKER,
+		/** {@link BrokerRSocketClient} reusing a pre-encoded {@link AddressTemplate}. */
+		BROKER_TEMPLATE,
+		/** Plain {@link RSocketClient} with the address metadata built by hand. */
+		RAW
+	}
+
+	public enum Decoder {
+		ZERO_COPY(PayloadDecoder.ZERO_COPY),
+		DEFAULT(PayloadDecoder.DEFAULT);
+
+		private final PayloadDecoder payloadDecoder;
+
+		Decoder(PayloadDecoder payloadDecoder) {
+			this.payloadDecoder = payloadDecoder;
+		}
+	}
+
+	@Param({"BROKER", "BROKER_TEMPLATE", "RAW"})
+	ClientType clientType;
+
+	@Param({"ZERO_COPY", "DEFAULT"})
+	Decoder decoder;
+
+	final ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
+
+	final Id routeId = Id.random();
+
+	Disposable server;
+
+	RSocketClient client;
+
+	BrokerRSocketClient brokerClient;
+
+	AddressTemplate addressTemplate;
+
+	ByteBuf data;
+
+	@Setup
+	public void setup() {
+		String name = "benchmark-" + UUID.randomUUID();
+		server = RSocketServer.create(SocketAcceptor.with(new EchoResponder()))
+				.payloadDecoder(decoder.payloadDecoder)
+				.bind(LocalServerTransport.create(name))
+				.block();
+
+		RSocketConnector connector = RSocketConnector.create()
+				.payloadDecoder(decoder.payloadDecoder)
+				.metadataMimeType(COMPOSITE_MIME_TYPE);
+		if (clientType == ClientType.RAW) {
+			client = RSocketClient.from(connector.connect(LocalClientTransport.create(name)));
+		}
+		else {
+			brokerClient = BrokerRSocketConnector.create(connector)
+					.routeId(routeId)
+					.serviceName("benchmark")
+					.toRSocketClient(LocalClientTransport.create(name));
+			client = brokerClient;
+			addressTemplate = brokerClient.addressTemplate(SERVICE_NAME);
+		}
+
+		data = allocator.buffer().writeBytes("hello".getBytes(StandardCharsets.UTF_8));
+		// connect outside of the measurement
+		client.source().block();
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.dispose();
+		server.dispose();
+		if (addressTemplate != null) {
+			addressTemplate.dispose();
+		}
+		data.release();
+	}
+
+	@Benchmark
+	public void requestResponse() {
+		client.requestResponse(Mono.fromSupplier(this::payload)).block().release();
+	}
+
+	@Benchmark
+	public void requestStream() {
+		client.requestStream(Mono.fromSupplier(this::payload))
+				.doOnNext(Payload::release)
+				.blockLast();
+	}
+
+	@Benchmark
+	public void fireAndForget() {
+		client.fireAndForget(Mono.fromSupplier(this::payload)).block();
+	}
+
+	private Payload payload() {
+		CompositeByteBuf metadata = allocator.compositeBuffer();
+		switch (clientType) {
+		case BROKER:
+			brokerClient.encodeAddressMetadata(metadata, SERVICE_NAME);
+			break;
+		case BROKER_TEMPLATE:
+			addressTemplate.encodeAddressMetadata(metadata);
+			break;
+		default:
+			ByteBuf address = AddressFlyweight.encode(allocator, routeId, Tags.empty(),
+					Tags.builder().with(WellKnownKey.SERVICE_NAME, SERVICE_NAME).buildTags(), AddressFlyweight.FLAGS_U);
+			CompositeMetadataCodec.encodeAndAddMetadata(metadata, allocator, MimeTypes.BROKER_FRAME_MIME_TYPE, address);
+		}
+		return ByteBufPayload.create(data.retainedSlice(), metadata);
+	}
+
+	static class EchoResponder implements RSocket {
+
+		@Override
+		public Mono<Void> fireAndForget(Payload payload) {
+			payload.release();
+			return Mono.empty();
+		}
+
+		@Override
+		public Mono<Payload> requestResponse(Payload payload) {
+			return Mono.just(payload);
+		}
+
+		@Override
+		public Flux<Payload> requestStream(Payload payload) {
+			Payload copy = DefaultPayload.create(payload);
+			payload.release();
+			return Flux.range(0, STREAM_LENGTH).map(i -> copy);
+		}
+
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.benchmarks.BenchmarkTags.AllocatorType;
+import io.rsocket.broker.benchmarks.BenchmarkTags.KeyType;
+import io.rsocket.broker.benchmarks.BenchmarkTags.ValueType;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.frames.Address;
+import io.rsocket.broker.frames.AddressFlyweight;
+import io.rsocket.broker.frames.BrokerInfo;
+import io.rsocket.broker.frames.BrokerInfoFlyweight;
+import io.rsocket.broker.frames.RouteJoin;
+import io.rsocket.broker.frames.RouteJoinFlyweight;
+import io.rsocket.broker.frames.RouteRemove;
+import io.rsocket.broker.frames.RouteRemoveFlyweight;
+import io.rsocket.broker.frames.RouteSetup;
+import io.rsocket.broker.frames.RouteSetupFlyweight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Encode and decode cost of every broker frame type.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FrameCodecBenchmarks {
+
+	private static final String SERVICE_NAME = "benchmark-service";
+
+	@Param({"0", "4", "16", "64"})
+	int tagCount;
+
+	@Param({"WELL_KNOWN", "CUSTOM"})
+	KeyType keyType;
+
+	@Param({"ASCII", "MULTI_BYTE"})
+	ValueType valueType;
+
+	@Param({"POOLED", "UNPOOLED"})
+	AllocatorType allocatorType;
+
+	ByteBufAllocator allocator;
+
+	Id brokerId;
+
+	Id routeId;
+
+	long timestamp;
+
+	Tags tags;
+
+	ByteBuf address;
+
+	ByteBuf routeSetup;
+
+	ByteBuf routeJoin;
+
+	ByteBuf routeRemove;
+
+	ByteBuf brokerInfo;
+
+	@Setup
+	public void setup() {
+		allocator = allocatorType.allocator();
+		brokerId = Id.random();
+		routeId = Id.random();
+		timestamp = System.currentTimeMillis();
+		tags = BenchmarkTags.create(tagCount, keyType, valueType);
+
+		address = AddressFlyweight.encode(allocator, routeId, Tags.empty(), tags, AddressFlyweight.FLAGS_U);
+		routeSetup = RouteSetupFlyweight.encode(allocator, routeId, SERVICE_NAME, tags, 0);
+		routeJoin = RouteJoinFlyweight.encode(allocator, brokerId, routeId, timestamp, SERVICE_NAME, tags, 0);
+		routeRemove = RouteRemoveFlyweight.encode(allocator, brokerId, routeId, timestamp, 0);
+		brokerInfo = BrokerInfoFlyweight.encode(allocator, brokerId, timestamp, tags, 0);
+	}
+
+	@TearDown
+	public void tearDown() {
+		address.release();
+		routeSetup.release();
+		routeJoin.release();
+		routeRemove.release();
+		brokerInfo.release();
+	}
+
+	@Benchmark
+	public int encodeAddress() {
+		return release(AddressFlyweight.encode(allocator, routeId, Tags.empty(), tags, AddressFlyweight.FLAGS_U));
+	}
+
+	@Benchmark
+	public Tags decodeAddress() {
+		// Address.from requires at least one tag, decode the fields directly
+		AddressFlyweight.originRouteId(address);
+		return AddressFlyweight.tags(address);
+	}
+
+	@Benchmark
+	public int encodeRouteSetup() {
+		return release(RouteSetupFlyweight.encode(allocator, routeId, SERVICE_NAME, tags, 0));
+	}
+
+	@Benchmark
+	public RouteSetup decodeRouteSetup() {
+		return RouteSetup.from(routeSetup);
+	}
+
+	@Benchmark
+	public int encodeRouteJoin() {
+		return release(RouteJoinFlyweight.encode(allocator, brokerId, routeId, timestamp, SERVICE_NAME, tags, 0));
+	}
+
+	@Benchmark
+	public RouteJoin decodeRouteJoin() {
+		return RouteJoin.from(routeJoin);
+	}
+
+	@Benchmark
+	public int encodeRouteRemove() {
+		return release(RouteRemoveFlyweight.encode(allocator, brokerId, routeId, timestamp, 0));
+	}
+
+	@Benchmark
+	public RouteRemove decodeRouteRemove() {
+		return RouteRemove.from(routeRemove);
+	}
+
+	@Benchmark
+	public int encodeBrokerInfo() {
+		return release(BrokerInfoFlyweight.encode(allocator, brokerId, timestamp, tags, 0));
+	}
+
+	@Benchmark
+	public BrokerInfo decodeBrokerInfo() {
+		return BrokerInfo.from(brokerInfo);
+	}
+
+	private static int release(ByteBuf byteBuf) {
+		int length = byteBuf.readableBytes();
+		byteBuf.release();
+		return length;
+	}
+
+}
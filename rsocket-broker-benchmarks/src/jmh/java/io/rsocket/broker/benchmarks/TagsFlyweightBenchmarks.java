@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.benchmarks.BenchmarkTags.AllocatorType;
+import io.rsocket.broker.benchmarks.BenchmarkTags.KeyType;
+import io.rsocket.broker.benchmarks.BenchmarkTags.ValueType;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.frames.TagCursor;
+import io.rsocket.broker.frames.TagsFlyweight;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost of the tag block shared by all frames carrying tags.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TagsFlyweightBenchmarks {
+
+	@Param({"0", "4", "16", "64"})
+	int tagCount;
+
+	@Param({"WELL_KNOWN", "CUSTOM"})
+	KeyType keyType;
+
+	@Param({"ASCII", "MULTI_BYTE"})
+	ValueType valueType;
+
+	@Param({"POOLED", "UNPOOLED"})
+	AllocatorType allocatorType;
+
+	ByteBufAllocator allocator;
+
+	Tags tags;
+
+	ByteBuf encoded;
+
+	final TagCursor cursor = new TagCursor();
+
+	@Setup
+	public void setup() {
+		allocator = allocatorType.allocator();
+		tags = BenchmarkTags.create(tagCount, keyType, valueType);
+		encoded = TagsFlyweight.encode(allocator.buffer(), tags);
+	}
+
+	@TearDown
+	public void tearDown() {
+		encoded.release();
+	}
+
+	@Benchmark
+	public int encode() {
+		ByteBuf byteBuf = TagsFlyweight.encode(allocator.buffer(TagsFlyweight.encodedLength(tags)), tags);
+		int length = byteBuf.readableBytes();
+		byteBuf.release();
+		return length;
+	}
+
+	@Benchmark
+	public Tags decode() {
+		return TagsFlyweight.decode(0, encoded);
+	}
+
+	@Benchmark
+	public int length() {
+		return TagsFlyweight.length(0, encoded);
+	}
+
+	@Benchmark
+	public int cursor() {
+		int valueBytes = 0;
+		cursor.wrap(encoded, 0);
+		while (cursor.next()) {
+			valueBytes += cursor.valueLength();
+		}
+		return valueBytes;
+	}
+
+}
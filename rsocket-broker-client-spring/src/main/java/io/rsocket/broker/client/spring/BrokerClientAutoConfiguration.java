@@ -19,11 +19,17 @@ package io.rsocket.broker.client.spring;
 import java.net.URI;
 
 import io.rsocket.RSocket;
+import io.rsocket.broker.client.BrokerRSocketConnector;
+import io.rsocket.broker.client.LatencyAwareLoadbalanceStrategy;
+import io.rsocket.broker.client.LeastOutstandingLoadbalanceStrategy;
+import io.rsocket.broker.common.Tags;
 import io.rsocket.broker.common.spring.ClientTransportFactory;
 import io.rsocket.broker.common.spring.DefaultClientTransportFactory;
 import io.rsocket.broker.common.spring.MimeTypes;
 import io.rsocket.broker.frames.RouteSetup;
-import io.rsocket.transport.ClientTransport;
+import io.rsocket.loadbalance.LoadbalanceStrategy;
+import io.rsocket.loadbalance.RoundRobinLoadbalanceStrategy;
+import io.rsocket.loadbalance.WeightedLoadbalanceStrategy;
 import reactor.core.Disposable;
 import reactor.core.publisher.Sinks;
 import reactor.core.publisher.Sinks.One;
@@ -56,8 +62,6 @@ import static io.rsocket.broker.client.spring.BrokerClientProperties.CONFIG_PREF
 @AutoConfigureBefore(RSocketRequesterAutoConfiguration.class)
 public class BrokerClientAutoConfiguration {
 
-	//TODO: accept BrokerInfo to get updated broker nodes. Metadata Push
-
 	@Bean
 	public BrokerClientProperties brokerClientProperties() {
 		return new BrokerClientProperties();
@@ -97,9 +101,55 @@ public class BrokerClientAutoConfiguration {
 
 	@Bean
 	@ConditionalOnMissingBean
-	public RSocketConnectorConfigurer rSocketConnectorConfigurer(RSocketMessageHandler messageHandler) {
-		return connector -> connector //.addRequesterPlugin(interceptor)
-				.acceptor(messageHandler.responder());
+	public RSocketConnectorConfigurer rSocketConnectorConfigurer(RSocketMessageHandler messageHandler,
+			BrokerInfoTracker brokerInfoTracker, BrokerClientProperties properties) {
+		BrokerClientProperties.Resume resume = properties.getResume();
+		return connector -> {
+			connector //.addRequesterPlugin(interceptor)
+					.interceptors(registry -> registry.forResponder(brokerInfoTracker.responderInterceptor()))
+					.acceptor(messageHandler.responder());
+			if (resume.isEnabled()) {
+				connector.resume(BrokerRSocketConnector.resume(resume.getSessionDuration(),
+						Math.toIntExact(resume.getStoreSize().toBytes())));
+			}
+		};
+	}
+
+	@Bean(destroyMethod = "dispose")
+	@ConditionalOnMissingBean
+	public BrokerInfoTracker brokerInfoTracker(BrokerClientProperties properties,
+			ObjectProvider<ClientTransportFactory> transportFactories) {
+		Tags.Builder<?> clientTags = Tags.builder();
+		properties.getTags().forEach(clientTags::with);
+		BrokerClientProperties.ZoneAffinity zoneAffinity = properties.getZoneAffinity();
+		return new BrokerInfoTracker(properties.getBrokers(), uri -> transportFactories.orderedStream()
+				.filter(factory -> factory.supports(uri)).findFirst()
+				.map(factory -> factory.create(uri))
+				.orElse(null),
+				clientTags.buildTags(), zoneAffinity.isEnabled() ? zoneAffinity.getMinHealthyBrokers() : 0,
+				properties.getConnectionsPerBroker(), properties.getBrokerExpiry());
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public LoadbalanceStrategy brokerLoadbalanceStrategy(BrokerClientProperties properties) {
+		BrokerClientProperties.LoadbalanceType loadbalance = properties.getLoadbalance();
+		if (loadbalance == null) {
+			// spread requests over the pooled connections of a broker by load
+			loadbalance = properties.getConnectionsPerBroker() > 1
+					? BrokerClientProperties.LoadbalanceType.LEAST_OUTSTANDING
+					: BrokerClientProperties.LoadbalanceType.ROUND_ROBIN;
+		}
+		switch (loadbalance) {
+		case WEIGHTED:
+			return WeightedLoadbalanceStrategy.create();
+		case LEAST_OUTSTANDING:
+			return new LeastOutstandingLoadbalanceStrategy();
+		case LATENCY:
+			return new LatencyAwareLoadbalanceStrategy();
+		default:
+			return new RoundRobinLoadbalanceStrategy();
+		}
 	}
 
 	@Bean
@@ -121,22 +171,18 @@ public class BrokerClientAutoConfiguration {
 	@Bean
 	@ConditionalOnProperty(name = CONFIG_PREFIX + ".auto-connect", matchIfMissing = true)
 	public BrokerRSocketRequester brokerClientRSocketRequester(BrokerRSocketRequesterBuilder builder,
-			BrokerClientProperties properties, ObjectProvider<ClientTransportFactory> transportFactories, ClientThreadManager ignored) {
+			BrokerClientProperties properties, ObjectProvider<ClientTransportFactory> transportFactories,
+			BrokerInfoTracker brokerInfoTracker, LoadbalanceStrategy loadbalanceStrategy, ClientThreadManager ignored) {
 		if (CollectionUtils.isEmpty(properties.getBrokers())) {
 			throw new IllegalStateException(CONFIG_PREFIX + ".brokers may not be empty");
 		}
-		// TODO: use loadbalancer https://github.com/rsocket-broker/rsocket-broker-client/issues/8
-		URI broker = properties.getBrokers().iterator().next();
-
-		ClientTransport clientTransport = transportFactories.orderedStream().filter(factory -> factory.supports(broker)).findFirst()
-				.map(factory -> factory.create(broker))
-				.orElseThrow(() -> new IllegalStateException("Unknown transport " + properties));
-
-		// TODO: targets and strategy as beans
-		//Flux<List<LoadbalanceTarget>> loadbalanceTargets = Flux.just(Collections.singletonList(LoadbalanceTarget.from("config", clientTransport)));
-		//RoundRobinLoadbalanceStrategy loadbalanceStrategy = new RoundRobinLoadbalanceStrategy();
-		//BrokerRSocketRequester requester = builder.transports(loadbalanceTargets, loadbalanceStrategy);
-		BrokerRSocketRequester requester = builder.transport(clientTransport);
+		for (URI broker : properties.getBrokers()) {
+			if (transportFactories.orderedStream().noneMatch(factory -> factory.supports(broker))) {
+				throw new IllegalStateException("Unknown transport " + broker);
+			}
+		}
+
+		BrokerRSocketRequester requester = builder.transports(brokerInfoTracker.targets(), loadbalanceStrategy);
 
 		// if we don't subscribe, there won't be a connection to the broker.
 		requester.rsocketClient().source().subscribe();
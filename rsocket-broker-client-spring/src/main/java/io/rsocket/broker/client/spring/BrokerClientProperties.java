@@ -17,6 +17,7 @@
 package io.rsocket.broker.client.spring;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -28,6 +29,7 @@ import io.rsocket.broker.common.MutableKey;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.style.ToStringCreator;
 import org.springframework.util.MimeType;
+import org.springframework.util.unit.DataSize;
 
 import static io.rsocket.broker.client.spring.BrokerClientProperties.CONFIG_PREFIX;
 
@@ -52,6 +54,19 @@ public class BrokerClientProperties {
 
 	private MimeType dataMimeType;
 
+	private LoadbalanceType loadbalance;
+
+	private int connectionsPerBroker = 1;
+
+	/**
+	 * Brokers that sent no broker info for this long are no longer connected to.
+	 */
+	private Duration brokerExpiry = Duration.ofMinutes(5);
+
+	private final ZoneAffinity zoneAffinity = new ZoneAffinity();
+
+	private final Resume resume = new Resume();
+
 	public BrokerClientProperties() {
 	}
 
@@ -115,6 +130,42 @@ public class BrokerClientProperties {
 		this.dataMimeType = dataMimeType;
 	}
 
+	/**
+	 * @return the configured strategy or null to use round robin for one connection per
+	 * broker and least outstanding for more.
+	 */
+	public LoadbalanceType getLoadbalance() {
+		return this.loadbalance;
+	}
+
+	public void setLoadbalance(LoadbalanceType loadbalance) {
+		this.loadbalance = loadbalance;
+	}
+
+	public int getConnectionsPerBroker() {
+		return this.connectionsPerBroker;
+	}
+
+	public void setConnectionsPerBroker(int connectionsPerBroker) {
+		this.connectionsPerBroker = connectionsPerBroker;
+	}
+
+	public Duration getBrokerExpiry() {
+		return this.brokerExpiry;
+	}
+
+	public void setBrokerExpiry(Duration brokerExpiry) {
+		this.brokerExpiry = brokerExpiry;
+	}
+
+	public ZoneAffinity getZoneAffinity() {
+		return this.zoneAffinity;
+	}
+
+	public Resume getResume() {
+		return this.resume;
+	}
+
 	@Override
 	public String toString() {
 		// @formatter:off
@@ -127,8 +178,126 @@ public class BrokerClientProperties {
 				.append("address", address)
 				.append("failIfMissingBrokerMetadata", failIfMissingBrokerMetadata)
 				.append("dataMimeType", dataMimeType)
+				.append("loadbalance", loadbalance)
+				.append("connectionsPerBroker", connectionsPerBroker)
+				.append("brokerExpiry", brokerExpiry)
+				.append("zoneAffinity", zoneAffinity)
+				.append("resume", resume)
 				.toString();
 		// @formatter:on
 	}
 
+	/**
+	 * Preference for brokers in the zone and region of the client's tags.
+	 */
+	public static class ZoneAffinity {
+
+		private boolean enabled = true;
+
+		/**
+		 * Brokers of other zones are used while fewer healthy brokers are in the zone.
+		 */
+		private int minHealthyBrokers = 1;
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMinHealthyBrokers() {
+			return this.minHealthyBrokers;
+		}
+
+		public void setMinHealthyBrokers(int minHealthyBrokers) {
+			this.minHealthyBrokers = minHealthyBrokers;
+		}
+
+		@Override
+		public String toString() {
+			// @formatter:off
+			return new ToStringCreator(this)
+					.append("enabled", enabled)
+					.append("minHealthyBrokers", minHealthyBrokers)
+					.toString();
+			// @formatter:on
+		}
+
+	}
+
+	/**
+	 * Session resumption, so short disconnects keep streams open.
+	 */
+	public static class Resume {
+
+		private boolean enabled;
+
+		/**
+		 * How long the session survives without a connection.
+		 */
+		private Duration sessionDuration = Duration.ofMinutes(2);
+
+		/**
+		 * Upper bound of sent frames kept for replay after resuming.
+		 */
+		private DataSize storeSize = DataSize.ofKilobytes(512);
+
+		public boolean isEnabled() {
+			return this.enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public Duration getSessionDuration() {
+			return this.sessionDuration;
+		}
+
+		public void setSessionDuration(Duration sessionDuration) {
+			this.sessionDuration = sessionDuration;
+		}
+
+		public DataSize getStoreSize() {
+			return this.storeSize;
+		}
+
+		public void setStoreSize(DataSize storeSize) {
+			this.storeSize = storeSize;
+		}
+
+		@Override
+		public String toString() {
+			// @formatter:off
+			return new ToStringCreator(this)
+					.append("enabled", enabled)
+					.append("sessionDuration", sessionDuration)
+					.append("storeSize", storeSize)
+					.toString();
+			// @formatter:on
+		}
+
+	}
+
+	/**
+	 * How requests are spread across the connected brokers.
+	 */
+	public enum LoadbalanceType {
+
+		/** Each broker in turn. */
+		ROUND_ROBIN,
+
+		/** By latency and error rate, see {@link io.rsocket.loadbalance.WeightedLoadbalanceStrategy}. */
+		WEIGHTED,
+
+		/** The broker with the fewest outstanding requests of two picked at random. */
+		LEAST_OUTSTANDING,
+
+		/** The broker with the lower latency times outstanding requests of two picked at random. */
+		LATENCY
+
+	}
+
 }
@@ -0,0 +1,524 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client.spring;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.MimeTypes;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import io.rsocket.broker.frames.BrokerInfo;
+import io.rsocket.broker.frames.FrameHeaderFlyweight;
+import io.rsocket.broker.frames.FrameType;
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.util.RSocketProxy;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps the set of broker endpoints current from {@link BrokerInfo} frames the brokers
+ * push to the client. Each broker is identified by its id and the newest
+ * {@link BrokerInfo#getTimestamp() timestamp} wins, its
+ * {@link WellKnownKey#BROKER_PROXY_URI} tag is the endpoint clients connect to. A
+ * broker without that tag no longer accepts clients and is dropped. So is a broker
+ * without a connection that sent no info for longer than the expiry, or that stayed
+ * unhealthy for that long, for example after it crashed. The configured brokers are
+ * used until the first broker endpoint is known. Endpoints the transport factory
+ * returns no transport for are left out of the targets.
+ *
+ * Given the {@link WellKnownKey#ZONE} and {@link WellKnownKey#REGION} of the client,
+ * only brokers in the same zone are targets, then brokers in the same region and then
+ * all others, each further tier is added while fewer than the minimum number of
+ * healthy brokers are targets. Health is tracked per connection: a connection is down
+ * from a failed connect or an unexpected close until it connects again, and a broker is
+ * unhealthy while it has a connection down and none up. Connections of endpoints that
+ * are no longer targets are closed by the load balancer on purpose and not counted.
+ * Brokers without {@link BrokerInfo} count as local.
+ *
+ * With more than one connection per broker each endpoint is published as that many
+ * targets keyed {@code uri#index}, so a load balanced client opens a connection for
+ * each and can spread requests over several event loops.
+ */
+public class BrokerInfoTracker implements Disposable {
+
+	private static final Log logger = LogFactory.getLog(BrokerInfoTracker.class);
+
+	private final List<URI> seeds;
+
+	private final Function<URI, ClientTransport> transportFactory;
+
+	private final String zone;
+
+	private final String region;
+
+	private final int minHealthyBrokers;
+
+	private final int connectionsPerBroker;
+
+	private final long expiryNanos;
+
+	private final Disposable expiryTask;
+
+	// latest info by broker id, guarded by this
+	private final Map<Id, BrokerInfo> brokers = new LinkedHashMap<>();
+
+	// System.nanoTime() of the latest info by broker id, guarded by this
+	private final Map<Id, Long> lastSeen = new HashMap<>();
+
+	// guarded by this
+	private final Map<URI, List<LoadbalanceTarget>> targets = new HashMap<>();
+
+	// health of each target, guarded by this
+	private final Map<URI, List<TrackedTransport>> connections = new HashMap<>();
+
+	private final Sinks.Many<List<LoadbalanceTarget>> sink = Sinks.many().replay().latest();
+
+	private List<URI> current = Collections.emptyList();
+
+	private volatile long version;
+
+	private volatile boolean disposed;
+
+	public BrokerInfoTracker(List<URI> seeds, Function<URI, ClientTransport> transportFactory) {
+		this(seeds, transportFactory, Tags.empty(), 0);
+	}
+
+	/**
+	 * @param clientTags the tags of the client, its zone and region select the preferred
+	 * brokers.
+	 * @param minHealthyBrokers brokers of other zones and regions are added while fewer
+	 * healthy brokers are targets, 0 disables zone affinity.
+	 */
+	public BrokerInfoTracker(List<URI> seeds, Function<URI, ClientTransport> transportFactory,
+			Tags clientTags, int minHealthyBrokers) {
+		this(seeds, transportFactory, clientTags, minHealthyBrokers, 1);
+	}
+
+	/**
+	 * @param connectionsPerBroker the number of targets for each broker endpoint.
+	 */
+	public BrokerInfoTracker(List<URI> seeds, Function<URI, ClientTransport> transportFactory,
+			Tags clientTags, int minHealthyBrokers, int connectionsPerBroker) {
+		this(seeds, transportFactory, clientTags, minHealthyBrokers, connectionsPerBroker, null);
+	}
+
+	/**
+	 * @param expiry brokers without info for this long are dropped, null or zero never
+	 * drops them.
+	 */
+	public BrokerInfoTracker(List<URI> seeds, Function<URI, ClientTransport> transportFactory,
+			Tags clientTags, int minHealthyBrokers, int connectionsPerBroker, Duration expiry) {
+		if (connectionsPerBroker < 1) {
+			throw new IllegalArgumentException("connectionsPerBroker must be > 0");
+		}
+		this.connectionsPerBroker = connectionsPerBroker;
+		this.expiryNanos = expiry == null || expiry.isNegative() ? 0 : expiry.toNanos();
+		this.seeds = new ArrayList<>(seeds);
+		this.transportFactory = transportFactory;
+		this.zone = clientTags.get(WellKnownKey.ZONE);
+		this.region = clientTags.get(WellKnownKey.REGION);
+		this.minHealthyBrokers = minHealthyBrokers;
+		publish();
+		if (expiryNanos > 0) {
+			long period = Math.max(expiryNanos / 2, TimeUnit.SECONDS.toNanos(1));
+			this.expiryTask = Schedulers.parallel().schedulePeriodically(() -> expire(System.nanoTime()),
+					period, period, TimeUnit.NANOSECONDS);
+		}
+		else {
+			this.expiryTask = null;
+		}
+	}
+
+	/**
+	 * Applies a broker info unless a newer one was seen for the same broker.
+	 * @return true if the broker endpoints changed.
+	 */
+	public synchronized boolean accept(BrokerInfo brokerInfo) {
+		BrokerInfo existing = brokers.get(brokerInfo.getBrokerId());
+		if (existing != null && existing.getTimestamp() > brokerInfo.getTimestamp()) {
+			return false;
+		}
+		lastSeen.put(brokerInfo.getBrokerId(), System.nanoTime());
+		if (existing != null && existing.getTimestamp() == brokerInfo.getTimestamp()) {
+			return false;
+		}
+		brokers.put(brokerInfo.getBrokerId(), brokerInfo);
+		return publish();
+	}
+
+	/**
+	 * Drops brokers that sent no info within the expiry before the given time.
+	 * @param now the current {@link System#nanoTime()}.
+	 * @return true if the broker endpoints changed.
+	 */
+	synchronized boolean expire(long now) {
+		if (expiryNanos <= 0 || disposed) {
+			return false;
+		}
+		boolean expired = brokers.entrySet().removeIf(entry -> {
+			URI uri = proxyUri(entry.getValue());
+			if (uri != null && isConnected(uri)) {
+				// a broker with an open connection is alive
+				lastSeen.put(entry.getKey(), now);
+				return false;
+			}
+			long downSince = uri == null ? Long.MAX_VALUE : downSince(uri);
+			return now - lastSeen.get(entry.getKey()) > expiryNanos
+					|| (downSince != Long.MAX_VALUE && now - downSince > expiryNanos);
+		});
+		if (!expired) {
+			return false;
+		}
+		lastSeen.keySet().retainAll(brokers.keySet());
+		return publish();
+	}
+
+	/**
+	 * @return the endpoints as load balance targets, the current list first and then
+	 * every change. Targets of the same endpoint are the same instance in each list.
+	 */
+	public Flux<List<LoadbalanceTarget>> targets() {
+		return sink.asFlux();
+	}
+
+	/**
+	 * @return the broker endpoints that are currently targets.
+	 */
+	public synchronized List<URI> brokers() {
+		return this.current;
+	}
+
+	/**
+	 * @return the latest broker info for each known broker.
+	 */
+	public synchronized List<BrokerInfo> brokerInfos() {
+		return new ArrayList<>(brokers.values());
+	}
+
+	/**
+	 * @return the number of times the broker endpoints changed.
+	 */
+	public long version() {
+		return this.version;
+	}
+
+	/**
+	 * @return an interceptor for the client responder that applies {@link BrokerInfo}
+	 * frames received by metadata push, the push is then passed on unchanged. Metadata
+	 * that does not decode is logged and passed on as well.
+	 */
+	public RSocketInterceptor responderInterceptor() {
+		return rsocket -> new RSocketProxy(rsocket) {
+			@Override
+			public Mono<Void> metadataPush(Payload payload) {
+				if (payload.hasMetadata()) {
+					try {
+						acceptMetadata(payload.sliceMetadata());
+					}
+					catch (RuntimeException e) {
+						// a bad push must not close the broker connection
+						logger.warn("Ignoring malformed broker info in metadata push", e);
+					}
+				}
+				return super.metadataPush(payload);
+			}
+		};
+	}
+
+	void acceptMetadata(ByteBuf metadata) {
+		for (CompositeMetadata.Entry entry : new CompositeMetadata(metadata, false)) {
+			if (MimeTypes.BROKER_FRAME_MIME_TYPE.equals(entry.getMimeType())) {
+				ByteBuf content = entry.getContent();
+				if (FrameHeaderFlyweight.frameType(content) == FrameType.BROKER_INFO) {
+					accept(BrokerInfo.from(content));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return false if a connection to the endpoint is down and none is up.
+	 */
+	public synchronized boolean isHealthy(URI broker) {
+		boolean down = false;
+		for (TrackedTransport connection : connections.getOrDefault(broker, Collections.emptyList())) {
+			if (connection.connected > 0) {
+				return true;
+			}
+			down |= connection.down;
+		}
+		return !down;
+	}
+
+	/**
+	 * Marks every connection of the endpoint as connected or down.
+	 */
+	synchronized void health(URI broker, boolean healthy) {
+		boolean wasHealthy = isHealthy(broker);
+		for (TrackedTransport connection : connections.getOrDefault(broker, Collections.emptyList())) {
+			connection.update(healthy, System.nanoTime());
+		}
+		publishIfChanged(broker, wasHealthy);
+	}
+
+	private synchronized void connected(TrackedTransport connection, boolean up) {
+		if (connection.retired) {
+			return;
+		}
+		boolean wasHealthy = isHealthy(connection.broker);
+		if (up) {
+			connection.connected++;
+			connection.update(true, 0);
+		}
+		else {
+			connection.update(false, System.nanoTime());
+		}
+		publishIfChanged(connection.broker, wasHealthy);
+	}
+
+	private synchronized void closed(TrackedTransport connection) {
+		if (connection.retired) {
+			return;
+		}
+		boolean wasHealthy = isHealthy(connection.broker);
+		connection.connected--;
+		if (connection.connected == 0) {
+			connection.update(false, System.nanoTime());
+		}
+		publishIfChanged(connection.broker, wasHealthy);
+	}
+
+	private void publishIfChanged(URI broker, boolean wasHealthy) {
+		if (wasHealthy != isHealthy(broker) && !disposed) {
+			publish();
+		}
+	}
+
+	private boolean isConnected(URI broker) {
+		for (TrackedTransport connection : connections.getOrDefault(broker, Collections.emptyList())) {
+			if (connection.connected > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// the latest time a connection of an unhealthy broker went down
+	private long downSince(URI broker) {
+		if (isHealthy(broker)) {
+			return Long.MAX_VALUE;
+		}
+		long downSince = Long.MIN_VALUE;
+		for (TrackedTransport connection : connections.getOrDefault(broker, Collections.emptyList())) {
+			if (connection.down) {
+				downSince = Math.max(downSince, connection.downSinceNanos);
+			}
+		}
+		return downSince;
+	}
+
+	/**
+	 * @return the transport of the endpoint a target transport connects through.
+	 */
+	static ClientTransport unwrap(ClientTransport transport) {
+		return transport instanceof TrackedTransport ? ((TrackedTransport) transport).delegate : transport;
+	}
+
+	private synchronized boolean publish() {
+		// endpoints by affinity tier
+		List<Set<URI>> tiers = Arrays.asList(new LinkedHashSet<>(), new LinkedHashSet<>(), new LinkedHashSet<>());
+		for (BrokerInfo brokerInfo : brokers.values()) {
+			URI uri = proxyUri(brokerInfo);
+			if (uri != null) {
+				tiers.get(tier(brokerInfo)).add(uri);
+			}
+		}
+		if (tiers.stream().allMatch(Set::isEmpty)) {
+			tiers.get(0).addAll(seeds);
+		}
+		Set<URI> uris = new LinkedHashSet<>();
+		int healthy = 0;
+		for (Set<URI> tier : tiers) {
+			if (!uris.isEmpty() && healthy >= minHealthyBrokers) {
+				break;
+			}
+			for (URI uri : tier) {
+				if (uris.add(uri) && isHealthy(uri)) {
+					healthy++;
+				}
+			}
+		}
+		List<URI> updated = new ArrayList<>(uris);
+		if (updated.equals(current) && version > 0) {
+			return false;
+		}
+		targets.keySet().retainAll(uris);
+		connections.entrySet().removeIf(entry -> {
+			if (uris.contains(entry.getKey())) {
+				return false;
+			}
+			// the load balancer closes these connections, that says nothing about health
+			entry.getValue().forEach(connection -> connection.retired = true);
+			return true;
+		});
+		List<LoadbalanceTarget> loadbalanceTargets = new ArrayList<>(updated.size());
+		for (URI uri : updated) {
+			// skip endpoints without a supported transport
+			loadbalanceTargets.addAll(targets.computeIfAbsent(uri, this::createTargets));
+		}
+		this.current = Collections.unmodifiableList(updated);
+		this.version++;
+		sink.tryEmitNext(Collections.unmodifiableList(loadbalanceTargets));
+		return true;
+	}
+
+	private List<LoadbalanceTarget> createTargets(URI uri) {
+		ClientTransport transport = transportFactory.apply(uri);
+		if (transport == null) {
+			return Collections.emptyList();
+		}
+		List<TrackedTransport> tracked = new ArrayList<>(connectionsPerBroker);
+		List<LoadbalanceTarget> brokerTargets = new ArrayList<>(connectionsPerBroker);
+		for (int i = 0; i < connectionsPerBroker; i++) {
+			TrackedTransport connection = new TrackedTransport(uri, transport);
+			tracked.add(connection);
+			String key = connectionsPerBroker == 1 ? uri.toString() : uri + "#" + i;
+			brokerTargets.add(LoadbalanceTarget.from(key, connection));
+		}
+		connections.put(uri, tracked);
+		return brokerTargets;
+	}
+
+	private int tier(BrokerInfo brokerInfo) {
+		if (minHealthyBrokers <= 0 || (zone == null && region == null)) {
+			return 0;
+		}
+		Tags tags = brokerInfo.getTags();
+		boolean sameRegion = region == null || region.equals(tags.get(WellKnownKey.REGION));
+		if (sameRegion && (zone == null || zone.equals(tags.get(WellKnownKey.ZONE)))) {
+			return 0;
+		}
+		return sameRegion ? 1 : 2;
+	}
+
+	private static URI proxyUri(BrokerInfo brokerInfo) {
+		String proxyUri = brokerInfo.getTags().get(WellKnownKey.BROKER_PROXY_URI);
+		if (proxyUri == null) {
+			return null;
+		}
+		try {
+			return new URI(proxyUri);
+		}
+		catch (URISyntaxException e) {
+			// not an endpoint this client can connect to
+			return null;
+		}
+	}
+
+	/**
+	 * Reports connects and closed connections of one target to the tracker, every target
+	 * of an endpoint has its own instance over the shared transport.
+	 */
+	private final class TrackedTransport implements ClientTransport {
+
+		private final URI broker;
+
+		private final ClientTransport delegate;
+
+		// set once the endpoint is no longer a target
+		private volatile boolean retired;
+
+		// guarded by the tracker
+		private int connected;
+
+		private boolean down;
+
+		private long downSinceNanos;
+
+		private TrackedTransport(URI broker, ClientTransport delegate) {
+			this.broker = broker;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Mono<DuplexConnection> connect() {
+			return delegate.connect()
+					.doOnNext(connection -> {
+						connected(this, true);
+						connection.onClose().subscribe(null, e -> closed(this), () -> closed(this));
+					})
+					.doOnError(e -> connected(this, false));
+		}
+
+		@Override
+		public int maxFrameLength() {
+			return delegate.maxFrameLength();
+		}
+
+		private void update(boolean healthy, long now) {
+			if (healthy) {
+				down = false;
+			}
+			else if (!down) {
+				down = true;
+				downSinceNanos = now;
+			}
+		}
+
+	}
+
+	@Override
+	public void dispose() {
+		this.disposed = true;
+		if (expiryTask != null) {
+			expiryTask.dispose();
+		}
+		sink.tryEmitComplete();
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return this.disposed;
+	}
+
+}
@@ -17,6 +17,7 @@
 package io.rsocket.broker.client.spring;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.Map;
 
 import io.rsocket.broker.common.Id;
@@ -54,6 +55,11 @@ public class BrokerClientPropertiesTests {
 		assertThat(properties.getBrokers()).hasSize(1);
 		URI broker = properties.getBrokers().get(0);
 		assertThat(broker).isNotNull().hasScheme("tcp").hasHost("localhost").hasPort(7002);
+		assertThat(properties.getLoadbalance()).isNull();
+		assertThat(properties.getConnectionsPerBroker()).isEqualTo(1);
+		assertThat(properties.getBrokerExpiry()).isEqualTo(Duration.ofMinutes(5));
+		assertThat(properties.getResume().isEnabled()).isFalse();
+		assertThat(properties.getResume().getSessionDuration()).isEqualTo(Duration.ofMinutes(2));
 	}
 
 	@SpringBootConfiguration
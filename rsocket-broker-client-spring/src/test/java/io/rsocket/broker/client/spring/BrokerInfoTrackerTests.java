@@ -0,0 +1,305 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client.spring;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.rsocket.Closeable;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.broker.client.BrokerRSocketClient;
+import io.rsocket.broker.client.BrokerRSocketConnector;
+import io.rsocket.broker.client.LeastOutstandingLoadbalanceStrategy;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.MimeTypes;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import io.rsocket.broker.frames.BrokerInfo;
+import io.rsocket.broker.frames.BrokerInfoFlyweight;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.metadata.CompositeMetadataCodec;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.util.ByteBufPayload;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BrokerInfoTrackerTests {
+
+	private static final URI SEED = URI.create("local://seed");
+
+	@Test
+	public void seedsUntilBrokersAreKnown() {
+		BrokerInfoTracker tracker = tracker();
+		List<List<LoadbalanceTarget>> published = new ArrayList<>();
+		tracker.targets().subscribe(published::add);
+
+		assertThat(tracker.brokers()).containsExactly(SEED);
+		assertThat(published).hasSize(1);
+		assertThat(published.get(0)).extracting(LoadbalanceTarget::getKey).containsExactly(SEED.toString());
+
+		Id broker1 = Id.random();
+		assertThat(tracker.accept(brokerInfo(broker1, 1, "local://broker1"))).isTrue();
+		assertThat(tracker.brokers()).containsExactly(URI.create("local://broker1"));
+		assertThat(published).hasSize(2);
+		assertThat(tracker.version()).isEqualTo(2);
+	}
+
+	@Test
+	public void lastWriterWins() {
+		BrokerInfoTracker tracker = tracker();
+		Id broker1 = Id.random();
+		Id broker2 = Id.random();
+
+		tracker.accept(brokerInfo(broker1, 2, "local://broker1"));
+		tracker.accept(brokerInfo(broker2, 2, "local://broker2"));
+		assertThat(tracker.brokers()).containsExactly(URI.create("local://broker1"), URI.create("local://broker2"));
+
+		// older info is ignored
+		assertThat(tracker.accept(brokerInfo(broker1, 1, "local://old"))).isFalse();
+		// same endpoints do not publish
+		long version = tracker.version();
+		assertThat(tracker.accept(brokerInfo(broker1, 3, "local://broker1"))).isFalse();
+		assertThat(tracker.version()).isEqualTo(version);
+
+		// a broker without a proxy uri is dropped
+		assertThat(tracker.accept(BrokerInfo.from(broker2).timestamp(4).build())).isTrue();
+		assertThat(tracker.brokers()).containsExactly(URI.create("local://broker1"));
+	}
+
+	@Test
+	public void targetsAreReused() {
+		BrokerInfoTracker tracker = tracker();
+		List<List<LoadbalanceTarget>> published = new ArrayList<>();
+		tracker.targets().subscribe(published::add);
+
+		tracker.accept(brokerInfo(Id.random(), 1, "local://broker1"));
+		tracker.accept(brokerInfo(Id.random(), 1, "local://broker2"));
+
+		assertThat(published).hasSize(3);
+		assertThat(published.get(2).get(0)).isSameAs(published.get(1).get(0));
+	}
+
+	@Test
+	public void metadataPush() {
+		BrokerInfoTracker tracker = tracker();
+		Id brokerId = Id.random();
+		ByteBuf frame = BrokerInfoFlyweight.encode(ByteBufAllocator.DEFAULT, brokerId, 1,
+				BrokerInfo.from(brokerId).with(WellKnownKey.BROKER_PROXY_URI, "local://pushed").buildTags(), 0);
+		CompositeByteBuf metadata = ByteBufAllocator.DEFAULT.compositeBuffer();
+		CompositeMetadataCodec.encodeAndAddMetadata(metadata, ByteBufAllocator.DEFAULT,
+				MimeTypes.BROKER_FRAME_MIME_TYPE, frame);
+
+		tracker.acceptMetadata(metadata);
+		metadata.release();
+
+		assertThat(tracker.brokers()).containsExactly(URI.create("local://pushed"));
+		assertThat(tracker.brokerInfos()).extracting(BrokerInfo::getBrokerId).containsExactly(brokerId);
+	}
+
+	@Test
+	public void malformedMetadataPushIsPassedOn() {
+		BrokerInfoTracker tracker = tracker();
+		List<Payload> pushed = new ArrayList<>();
+		RSocket responder = tracker.responderInterceptor().apply(new RSocket() {
+			@Override
+			public Mono<Void> metadataPush(Payload payload) {
+				pushed.add(payload);
+				return Mono.empty();
+			}
+		});
+		// a truncated broker info frame in composite metadata
+		CompositeByteBuf truncated = ByteBufAllocator.DEFAULT.compositeBuffer();
+		CompositeMetadataCodec.encodeAndAddMetadata(truncated, ByteBufAllocator.DEFAULT,
+				MimeTypes.BROKER_FRAME_MIME_TYPE, ByteBufAllocator.DEFAULT.buffer().writeByte(1));
+		List<Payload> payloads = Arrays.asList(
+				ByteBufPayload.create(Unpooled.EMPTY_BUFFER, Unpooled.wrappedBuffer(new byte[] { 0x7f, 0x7f, 0x7f })),
+				ByteBufPayload.create(Unpooled.EMPTY_BUFFER, truncated));
+
+		for (Payload payload : payloads) {
+			responder.metadataPush(payload).block();
+		}
+
+		assertThat(pushed).containsExactlyElementsOf(payloads);
+		assertThat(tracker.brokers()).containsExactly(SEED);
+		pushed.forEach(Payload::release);
+	}
+
+	@Test
+	public void zoneAffinity() {
+		Tags clientTags = Tags.builder().with(WellKnownKey.REGION, "us-east-1").with(WellKnownKey.ZONE, "us-east-1a")
+				.buildTags();
+		BrokerInfoTracker tracker = new BrokerInfoTracker(Collections.singletonList(SEED),
+				uri -> LocalClientTransport.create(uri.getHost()), clientTags, 1);
+		URI local = URI.create("local://local");
+		URI sameRegion = URI.create("local://sameregion");
+		URI remote = URI.create("local://remote");
+
+		tracker.accept(brokerInfo(Id.random(), 1, remote.toString(), "eu-west-1", "eu-west-1a"));
+		// only remote brokers are known
+		assertThat(tracker.brokers()).containsExactly(remote);
+
+		tracker.accept(brokerInfo(Id.random(), 1, sameRegion.toString(), "us-east-1", "us-east-1b"));
+		tracker.accept(brokerInfo(Id.random(), 1, local.toString(), "us-east-1", "us-east-1a"));
+		assertThat(tracker.brokers()).containsExactly(local);
+
+		// spill over to the region, then everywhere
+		tracker.health(local, false);
+		assertThat(tracker.isHealthy(local)).isFalse();
+		assertThat(tracker.brokers()).containsExactly(local, sameRegion);
+		tracker.health(sameRegion, false);
+		assertThat(tracker.brokers()).containsExactly(local, sameRegion, remote);
+
+		tracker.health(local, true);
+		assertThat(tracker.brokers()).containsExactly(local);
+	}
+
+	@Test
+	public void connectionsPerBroker() {
+		BrokerInfoTracker tracker = new BrokerInfoTracker(Collections.singletonList(SEED),
+				uri -> LocalClientTransport.create(uri.getHost()), Tags.empty(), 0, 3);
+		List<List<LoadbalanceTarget>> published = new ArrayList<>();
+		tracker.targets().subscribe(published::add);
+
+		assertThat(published.get(0)).extracting(LoadbalanceTarget::getKey)
+				.containsExactly(SEED + "#0", SEED + "#1", SEED + "#2");
+		assertThat(BrokerInfoTracker.unwrap(published.get(0).get(0).getTransport()))
+				.isSameAs(BrokerInfoTracker.unwrap(published.get(0).get(2).getTransport()));
+	}
+
+	@Test
+	public void connectionsPerBrokerOpenConnections() {
+		AtomicInteger accepted = new AtomicInteger();
+		Closeable server = RSocketServer.create((setup, sendingSocket) -> {
+			accepted.incrementAndGet();
+			return Mono.just(new RSocket() {
+				@Override
+				public Flux<Payload> requestStream(Payload payload) {
+					payload.release();
+					return Flux.never();
+				}
+			});
+		}).bind(LocalServerTransport.create("connectionsperbroker")).block();
+		BrokerInfoTracker tracker = new BrokerInfoTracker(
+				Collections.singletonList(URI.create("local://connectionsperbroker")),
+				uri -> LocalClientTransport.create(uri.getHost()), Tags.empty(), 0, 3);
+		BrokerRSocketClient client = BrokerRSocketConnector.create().serviceName("localservice")
+				.toRSocketClient(tracker.targets(), new LeastOutstandingLoadbalanceStrategy());
+		List<Disposable> streams = new ArrayList<>();
+		try {
+			for (int i = 0; i < 100 && accepted.get() < 3; i++) {
+				streams.add(client.requestStream(Mono.fromSupplier(() -> DefaultPayload.create("stream")))
+						.subscribe());
+			}
+
+			assertThat(accepted).hasValue(3);
+		}
+		finally {
+			streams.forEach(Disposable::dispose);
+			client.dispose();
+			tracker.dispose();
+			server.dispose();
+		}
+	}
+
+	@Test
+	public void healthIsTrackedPerConnection() {
+		Closeable server = RSocketServer.create().bind(LocalServerTransport.create("healthpertarget")).block();
+		try {
+			URI broker = URI.create("local://healthpertarget");
+			BrokerInfoTracker tracker = new BrokerInfoTracker(Collections.singletonList(broker),
+					uri -> LocalClientTransport.create(uri.getHost()), Tags.empty(), 0, 2);
+			List<LoadbalanceTarget> targets = tracker.targets().blockFirst();
+			DuplexConnection first = targets.get(0).getTransport().connect().block();
+			DuplexConnection second = targets.get(1).getTransport().connect().block();
+
+			// the broker is up while any of its connections is
+			first.dispose();
+			first.onClose().block();
+			assertThat(tracker.isHealthy(broker)).isTrue();
+			second.dispose();
+			second.onClose().block();
+			assertThat(tracker.isHealthy(broker)).isFalse();
+			DuplexConnection reconnected = targets.get(0).getTransport().connect().block();
+			assertThat(tracker.isHealthy(broker)).isTrue();
+
+			// the load balancer closing connections of a dropped broker is not counted
+			tracker.accept(brokerInfo(Id.random(), 1, "local://other"));
+			long version = tracker.version();
+			reconnected.dispose();
+			reconnected.onClose().block();
+			assertThat(tracker.version()).isEqualTo(version);
+			assertThat(tracker.brokers()).containsExactly(URI.create("local://other"));
+		}
+		finally {
+			server.dispose();
+		}
+	}
+
+	@Test
+	public void expiry() {
+		BrokerInfoTracker tracker = new BrokerInfoTracker(Collections.singletonList(SEED),
+				uri -> LocalClientTransport.create(uri.getHost()), Tags.empty(), 0, 1, Duration.ofMinutes(1));
+		Id broker1 = Id.random();
+		Id broker2 = Id.random();
+		tracker.accept(brokerInfo(broker1, 1, "local://broker1"));
+		tracker.accept(brokerInfo(broker2, 1, "local://broker2"));
+		long now = System.nanoTime();
+
+		assertThat(tracker.expire(now + Duration.ofSeconds(30).toNanos())).isFalse();
+		assertThat(tracker.brokers()).hasSize(2);
+
+		// back to the seeds once all brokers are gone
+		assertThat(tracker.expire(now + Duration.ofMinutes(2).toNanos())).isTrue();
+		assertThat(tracker.brokers()).containsExactly(SEED);
+		assertThat(tracker.brokerInfos()).isEmpty();
+
+		tracker.dispose();
+		assertThat(tracker.isDisposed()).isTrue();
+	}
+
+	private static BrokerInfoTracker tracker() {
+		return new BrokerInfoTracker(Collections.singletonList(SEED), uri -> LocalClientTransport.create(uri.getHost()));
+	}
+
+	private static BrokerInfo brokerInfo(Id brokerId, long timestamp, String proxyUri) {
+		return BrokerInfo.from(brokerId).timestamp(timestamp).with(WellKnownKey.BROKER_PROXY_URI, proxyUri).build();
+	}
+
+	private static BrokerInfo brokerInfo(Id brokerId, long timestamp, String proxyUri, String region, String zone) {
+		return BrokerInfo.from(brokerId).timestamp(timestamp).with(WellKnownKey.BROKER_PROXY_URI, proxyUri)
+				.with(WellKnownKey.REGION, region).with(WellKnownKey.ZONE, zone).build();
+	}
+
+}
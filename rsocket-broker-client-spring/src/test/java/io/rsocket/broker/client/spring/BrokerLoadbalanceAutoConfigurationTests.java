@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client.spring;
+
+import java.net.URI;
+
+import io.rsocket.broker.client.LatencyAwareLoadbalanceStrategy;
+import io.rsocket.broker.client.LeastOutstandingLoadbalanceStrategy;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.WellKnownKey;
+import io.rsocket.broker.frames.BrokerInfo;
+import io.rsocket.loadbalance.LoadbalanceStrategy;
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.loadbalance.RoundRobinLoadbalanceStrategy;
+import io.rsocket.loadbalance.WeightedLoadbalanceStrategy;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.rsocket.RSocketMessagingAutoConfiguration;
+import org.springframework.boot.autoconfigure.rsocket.RSocketStrategiesAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BrokerLoadbalanceAutoConfigurationTests {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+			.withConfiguration(AutoConfigurations.of(RSocketStrategiesAutoConfiguration.class,
+					RSocketMessagingAutoConfiguration.class, BrokerClientRSocketStrategiesAutoConfiguration.class,
+					BrokerClientAutoConfiguration.class))
+			.withPropertyValues("io.rsocket.broker.client.auto-connect=false", "io.rsocket.broker.client.block=false",
+					"io.rsocket.broker.client.brokers[0]=tcp://localhost:7002");
+
+	@Test
+	public void roundRobinByDefault() {
+		contextRunner.run(context -> assertThat(context).getBean(LoadbalanceStrategy.class)
+				.isInstanceOf(RoundRobinLoadbalanceStrategy.class));
+	}
+
+	@Test
+	public void leastOutstandingByDefaultForPooledConnections() {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.connections-per-broker=3")
+				.run(context -> assertThat(context).getBean(LoadbalanceStrategy.class)
+						.isInstanceOf(LeastOutstandingLoadbalanceStrategy.class));
+	}
+
+	@Test
+	public void configuredStrategy() {
+		assertStrategy("round-robin", RoundRobinLoadbalanceStrategy.class);
+		assertStrategy("weighted", WeightedLoadbalanceStrategy.class);
+		assertStrategy("least-outstanding", LeastOutstandingLoadbalanceStrategy.class);
+		assertStrategy("latency", LatencyAwareLoadbalanceStrategy.class);
+	}
+
+	@Test
+	public void configuredStrategyWinsOverPooledConnections() {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.connections-per-broker=3",
+				"io.rsocket.broker.client.loadbalance=round-robin")
+				.run(context -> assertThat(context).getBean(LoadbalanceStrategy.class)
+						.isInstanceOf(RoundRobinLoadbalanceStrategy.class));
+	}
+
+	@Test
+	public void connectionsPerBroker() {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.connections-per-broker=2").run(context -> {
+			BrokerInfoTracker tracker = context.getBean(BrokerInfoTracker.class);
+			assertThat(tracker.targets().blockFirst()).extracting(LoadbalanceTarget::getKey)
+					.containsExactly("tcp://localhost:7002#0", "tcp://localhost:7002#1");
+		});
+	}
+
+	@Test
+	public void zoneAffinity() {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.tags.ZONE=us-east-1a").run(context -> {
+			BrokerInfoTracker tracker = context.getBean(BrokerInfoTracker.class);
+			tracker.accept(brokerInfo("tcp://remote:7002", "us-east-1b"));
+			tracker.accept(brokerInfo("tcp://local:7002", "us-east-1a"));
+			assertThat(tracker.brokers()).containsExactly(URI.create("tcp://local:7002"));
+		});
+	}
+
+	@Test
+	public void zoneAffinityDisabled() {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.tags.ZONE=us-east-1a",
+				"io.rsocket.broker.client.zone-affinity.enabled=false").run(context -> {
+			BrokerInfoTracker tracker = context.getBean(BrokerInfoTracker.class);
+			tracker.accept(brokerInfo("tcp://remote:7002", "us-east-1b"));
+			tracker.accept(brokerInfo("tcp://local:7002", "us-east-1a"));
+			assertThat(tracker.brokers()).containsExactly(URI.create("tcp://remote:7002"),
+					URI.create("tcp://local:7002"));
+		});
+	}
+
+	private void assertStrategy(String loadbalance, Class<? extends LoadbalanceStrategy> type) {
+		contextRunner.withPropertyValues("io.rsocket.broker.client.loadbalance=" + loadbalance)
+				.run(context -> assertThat(context).getBean(LoadbalanceStrategy.class).isInstanceOf(type));
+	}
+
+	private static BrokerInfo brokerInfo(String proxyUri, String zone) {
+		return BrokerInfo.from(Id.random()).timestamp(1).with(WellKnownKey.BROKER_PROXY_URI, proxyUri)
+				.with(WellKnownKey.ZONE, zone).build();
+	}
+
+}
@@ -85,7 +85,7 @@ public class CustomClientTransportFactoryTests {
 			Flux<List<LoadbalanceTarget>> targets = Flux.from(targetPublisher)
 					.map(loadbalanceTargets -> {
 						assertThat(loadbalanceTargets).hasSize(1);
-						if (loadbalanceTargets.get(0).getTransport() instanceof LocalClientTransport) {
+						if (BrokerInfoTracker.unwrap(loadbalanceTargets.get(0).getTransport()) instanceof LocalClientTransport) {
 							localTransportSet = true;
 						}
 						return loadbalanceTargets;
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.rsocket.broker.common.MimeTypes;
+import io.rsocket.broker.frames.Address;
+import io.rsocket.broker.frames.AddressFlyweight;
+import io.rsocket.metadata.CompositeMetadataCodec;
+import reactor.core.Disposable;
+
+/**
+ * A pre-encoded composite metadata entry for an {@link Address} that is sent many
+ * times. The entry header, frame header, origin route id and tags are encoded once,
+ * each request then only adds a retained slice of the encoded bytes.
+ */
+public final class AddressTemplate implements Disposable {
+
+	private final Address address;
+
+	private final ByteBuf encoded;
+
+	private final AtomicBoolean disposed = new AtomicBoolean();
+
+	AddressTemplate(ByteBufAllocator allocator, Address address) {
+		this.address = address;
+		ByteBuf frame = AddressFlyweight.encode(allocator, address.getOriginRouteId(),
+				address.getMetadata(), address.getTags(), address.getFlags());
+		CompositeByteBuf entry = allocator.compositeBuffer();
+		try {
+			CompositeMetadataCodec.encodeAndAddMetadata(entry, allocator,
+					MimeTypes.BROKER_FRAME_MIME_TYPE, frame);
+			// flatten header and frame so a request only costs a single slice
+			this.encoded = allocator.buffer(entry.readableBytes()).writeBytes(entry);
+		}
+		finally {
+			entry.release();
+		}
+	}
+
+	public Address getAddress() {
+		return this.address;
+	}
+
+	/**
+	 * Adds the pre-encoded address entry to the given composite metadata.
+	 * @param metadataHolder the composite metadata being built for a request.
+	 */
+	public void encodeAddressMetadata(CompositeByteBuf metadataHolder) {
+		metadataHolder.addComponent(true, retainedSlice());
+	}
+
+	/**
+	 * @return a retained slice of the encoded composite metadata entry, the caller is
+	 * responsible for releasing it.
+	 */
+	public ByteBuf retainedSlice() {
+		if (disposed.get()) {
+			throw new IllegalStateException("AddressTemplate has been disposed");
+		}
+		return this.encoded.retainedSlice();
+	}
+
+	@Override
+	public void dispose() {
+		if (disposed.compareAndSet(false, true)) {
+			this.encoded.release();
+		}
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return disposed.get();
+	}
+
+}
@@ -56,6 +56,19 @@ public class BrokerRSocketClient implements RSocketClient, Route {
 		encodeAndAddMetadata(metadataHolder, builder.build());
 	}
 
+	@Override
+	public AddressTemplate addressTemplate(String serviceName) {
+		Address.Builder builder = Address.from(connector.getRouteId()).with(WellKnownKey.SERVICE_NAME, serviceName);
+		return new AddressTemplate(connector.getAllocator(), builder.build());
+	}
+
+	@Override
+	public AddressTemplate addressTemplate(Consumer<Address.Builder> addressConsumer) {
+		Address.Builder builder = Address.from(connector.getRouteId());
+		addressConsumer.accept(builder);
+		return new AddressTemplate(connector.getAllocator(), builder.build());
+	}
+
 	@Override
 	public ByteBufAllocator allocator() {
 		return connector.getAllocator();
@@ -16,8 +16,10 @@
 
 package io.rsocket.broker.client;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -29,16 +31,24 @@ import io.rsocket.Payload;
 import io.rsocket.RSocket;
 import io.rsocket.core.RSocketClient;
 import io.rsocket.core.RSocketConnector;
+import io.rsocket.core.Resume;
 import io.rsocket.frame.decoder.PayloadDecoder;
+import io.rsocket.loadbalance.LoadbalanceRSocketClient;
+import io.rsocket.loadbalance.LoadbalanceStrategy;
+import io.rsocket.loadbalance.LoadbalanceTarget;
 import io.rsocket.metadata.CompositeMetadataCodec;
 import io.rsocket.metadata.WellKnownMimeType;
+import io.rsocket.resume.InMemoryResumableFramesStore;
 import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.IdGenerator;
 import io.rsocket.broker.common.MimeTypes;
 import io.rsocket.broker.common.Tags;
 import io.rsocket.broker.frames.RouteSetupFlyweight;
 import io.rsocket.transport.ClientTransport;
-import io.rsocket.util.DefaultPayload;
+import io.rsocket.util.ByteBufPayload;
+import org.reactivestreams.Publisher;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import reactor.util.function.Tuple2;
 import reactor.util.function.Tuples;
 
@@ -46,11 +56,14 @@ public class BrokerRSocketConnector {
 
 	private RSocketConnector delegate;
 	private Id routeId;
+	private IdGenerator idGenerator = IdGenerator.secure();
 	private String serviceName;
 	private List<Tuple2<ByteBuf, String>> setupMetadatas = new ArrayList<>();
 	private Tags tags;
 	private ByteBufAllocator allocator = ByteBufAllocator.DEFAULT;
 	private ByteBuf setupData = Unpooled.EMPTY_BUFFER;
+	// encoded once, each connection attempt sends retained duplicates
+	private Payload setupPayload;
 
 	private BrokerRSocketConnector() {
 		this(RSocketConnector.create().payloadDecoder(PayloadDecoder.ZERO_COPY)
@@ -89,74 +102,182 @@ public class BrokerRSocketConnector {
 
 	public BrokerRSocketConnector byteBufAllocator(ByteBufAllocator allocator) {
 		this.allocator = allocator;
+		invalidateSetupPayload();
 		return this;
 	}
 
 	public BrokerRSocketConnector routeId(Id routeId) {
 		this.routeId = routeId;
+		invalidateSetupPayload();
+		return this;
+	}
+
+	/**
+	 * Sets the generator of the route id when none is given with {@link #routeId(Id)}.
+	 */
+	public BrokerRSocketConnector idGenerator(IdGenerator idGenerator) {
+		this.idGenerator = Objects.requireNonNull(idGenerator, "idGenerator may not be null");
 		return this;
 	}
 
 	public BrokerRSocketConnector serviceName(String serviceName) {
 		this.serviceName = serviceName;
+		invalidateSetupPayload();
 		return this;
 	}
 
 	public BrokerRSocketConnector setupTags(Tags tags) {
 		this.tags = tags;
+		invalidateSetupPayload();
 		return this;
 	}
 
+	/**
+	 * Adds a composite metadata entry to the setup payload. The readable bytes are
+	 * copied, the caller keeps ownership of the buffer.
+	 */
 	public BrokerRSocketConnector setupMetadata(ByteBuf byteBuf, String mimeType) {
-		setupMetadatas.add(Tuples.of(byteBuf, mimeType));
+		setupMetadatas.add(Tuples.of(Unpooled.copiedBuffer(byteBuf), mimeType));
+		invalidateSetupPayload();
 		return this;
 	}
 
+	/**
+	 * Sets the data of the setup payload. The readable bytes are copied, the caller keeps
+	 * ownership of the buffer.
+	 */
 	public BrokerRSocketConnector setupData(ByteBuf byteBuf) {
-		this.setupData = byteBuf;
+		this.setupData = Unpooled.copiedBuffer(byteBuf);
+		invalidateSetupPayload();
+		return this;
+	}
+
+	/**
+	 * Reconnects with the given retry, for example from {@link RSocketClient} or a load
+	 * balanced client after a connection is lost.
+	 */
+	public BrokerRSocketConnector reconnect(Retry retry) {
+		delegate.reconnect(retry);
+		return this;
+	}
+
+	/**
+	 * Reconnects with exponential backoff between the given bounds. The first backoff
+	 * limits the rate at which a client reconnects, the jitter spreads the reconnects
+	 * of many clients after a broker fails.
+	 * @param jitter the random factor of each backoff, between 0 and 1.
+	 */
+	public BrokerRSocketConnector reconnect(Duration firstBackoff, Duration maxBackoff, double jitter) {
+		return reconnect(Retry.backoff(Long.MAX_VALUE, firstBackoff).maxBackoff(maxBackoff).jitter(jitter));
+	}
+
+	/**
+	 * Resumes the session after a lost connection with the given settings, streams stay
+	 * open and the route keeps its id.
+	 */
+	public BrokerRSocketConnector resume(Resume resume) {
+		delegate.resume(resume);
 		return this;
 	}
 
+	/**
+	 * Resume settings for up to the session duration, keeping at most
+	 * {@code storeSizeBytes} of sent frames to replay, for {@link #resume(Resume)}.
+	 * @return resume settings with a bounded in-memory store of sent frames.
+	 */
+	public static Resume resume(Duration sessionDuration, int storeSizeBytes) {
+		if (storeSizeBytes <= 0) {
+			throw new IllegalArgumentException("storeSizeBytes must be > 0");
+		}
+		return new Resume().sessionDuration(sessionDuration)
+				.storeFactory(token -> new InMemoryResumableFramesStore("client", token, storeSizeBytes));
+	}
+
 	public Mono<RSocket> connect(ClientTransport transport) {
-		createSetupPayload();
+		registerSetupPayload();
 		return delegate.connect(transport);
 	}
 
 	public Mono<RSocket> connect(Supplier<ClientTransport> transportSupplier) {
-		createSetupPayload();
+		registerSetupPayload();
 		return delegate.connect(transportSupplier);
 	}
 
 	public BrokerRSocketClient toRSocketClient(ClientTransport transport) {
-		createSetupPayload();
+		registerSetupPayload();
 		return new BrokerRSocketClient(this, RSocketClient.from(delegate.connect(transport)));
 	}
 
-	private void createSetupPayload() {
+	/**
+	 * Creates a client that spreads requests over a connection to each target.
+	 * @param targetPublisher the brokers to connect to, each list replaces the last.
+	 * @param loadbalanceStrategy picks the connection for each request, for example a
+	 * {@link LatencyAwareLoadbalanceStrategy}.
+	 */
+	public BrokerRSocketClient toRSocketClient(Publisher<List<LoadbalanceTarget>> targetPublisher,
+			LoadbalanceStrategy loadbalanceStrategy) {
+		registerSetupPayload();
+		return new BrokerRSocketClient(this, LoadbalanceRSocketClient.builder(targetPublisher)
+				.connector(delegate)
+				.loadbalanceStrategy(loadbalanceStrategy)
+				.build());
+	}
+
+	private synchronized void createSetupPayload() {
+		if (setupPayload != null) {
+			return;
+		}
 		Tags setupTags = tags;
 		if (setupTags == null) {
 			setupTags = Tags.empty();
 		}
 
-		Id setupRouteId = routeId;
-		if (setupRouteId == null) {
-			setupRouteId = Id.random();
+		if (routeId == null) {
+			// keep the generated id so reconnects and addresses use the same route
+			routeId = idGenerator.generate();
 		}
 
 		if (serviceName == null || serviceName.isEmpty()) {
 			throw new IllegalArgumentException("serviceName must not be null or empty");
 		}
 
-		ByteBuf routeSetup = RouteSetupFlyweight.encode(allocator, setupRouteId, serviceName, setupTags, 0);
+		ByteBuf routeSetup = RouteSetupFlyweight.encode(allocator, routeId, serviceName, setupTags, 0);
 		CompositeByteBuf setupMetadata = allocator.compositeBuffer();
 		CompositeMetadataCodec
 				.encodeAndAddMetadata(setupMetadata, allocator, MimeTypes.BROKER_FRAME_MIME_TYPE.toString(), routeSetup);
+		// the connector keeps its buffers in case the payload is built again
 		setupMetadatas.forEach(entry -> CompositeMetadataCodec
-				.encodeAndAddMetadata(setupMetadata, allocator, entry.getT2(), entry.getT1()));
+				.encodeAndAddMetadata(setupMetadata, allocator, entry.getT2(), entry.getT1().retainedDuplicate()));
 
-		Payload setupPayload = DefaultPayload.create(setupData, setupMetadata);
+		ByteBuf metadata;
+		try {
+			// flatten so each duplicate is a single buffer
+			metadata = allocator.buffer(setupMetadata.readableBytes()).writeBytes(setupMetadata);
+		}
+		finally {
+			setupMetadata.release();
+		}
+		this.setupPayload = ByteBufPayload.create(setupData.retainedDuplicate(), metadata);
+	}
 
-		delegate.setupPayload(setupPayload);
+	private void registerSetupPayload() {
+		// fail on invalid settings at connect rather than on the first connection attempt
+		createSetupPayload();
+		delegate.setupPayload(Mono.fromSupplier(this::retainedSetupPayload));
+	}
+
+	// the current setup payload, built again after a setter changed it
+	private synchronized Payload retainedSetupPayload() {
+		createSetupPayload();
+		return ByteBufPayload.create(setupPayload.sliceData().retainedDuplicate(),
+				setupPayload.sliceMetadata().retainedDuplicate());
+	}
+
+	private synchronized void invalidateSetupPayload() {
+		if (setupPayload != null) {
+			setupPayload.release();
+			setupPayload = null;
+		}
 	}
 
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketConnector;
+import io.rsocket.loadbalance.ClientLoadbalanceStrategy;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.util.RSocketProxy;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Picks the broker connection with the lower expected cost of two chosen at random.
+ * Each connection keeps a peak sensitive, exponentially weighted moving average of the
+ * time to the response of its request-response requests, and the expected cost is that
+ * average times the requests outstanding plus one. Requests of every interaction type
+ * count as outstanding. A fire-and-forget completes once it is written and is never
+ * sampled, and the first element of a stream may take as long as the events it
+ * subscribes to, so a stream is only sampled when it ends or fails before its first
+ * element. The average decays with the time since the last sample, so a connection
+ * that was slow once is tried again once it has been avoided for a while. A connection
+ * without latency to go by costs a large penalty per outstanding request, so a fresh
+ * connection does not take every request until its first response. Connections are
+ * tracked by a requester interceptor registered on {@link #initialize(RSocketConnector)}
+ * and report the cost through {@link RSocket#availability()}, which the pooled
+ * connections of a load balanced client pass through.
+ */
+public class LatencyAwareLoadbalanceStrategy implements ClientLoadbalanceStrategy {
+
+	public static final Duration DEFAULT_DECAY = Duration.ofSeconds(10);
+
+	/** Cost of a connection without latency samples that has outstanding requests. */
+	static final double PENALTY_NANOS = Long.MAX_VALUE >> 16;
+
+	private final long decayNanos;
+
+	private final LongSupplier nanoClock;
+
+	public LatencyAwareLoadbalanceStrategy() {
+		this(DEFAULT_DECAY);
+	}
+
+	/**
+	 * @param decay how long a latency sample keeps weight in the average.
+	 */
+	public LatencyAwareLoadbalanceStrategy(Duration decay) {
+		this(decay, System::nanoTime);
+	}
+
+	LatencyAwareLoadbalanceStrategy(Duration decay, LongSupplier nanoClock) {
+		if (decay.isNegative() || decay.isZero()) {
+			throw new IllegalArgumentException("decay must be positive");
+		}
+		this.decayNanos = decay.toNanos();
+		this.nanoClock = nanoClock;
+	}
+
+	@Override
+	public void initialize(RSocketConnector connector) {
+		connector.interceptors(registry -> registry.forRequester(
+				(RSocketInterceptor) rsocket -> new LatencyTrackingRSocket(rsocket, decayNanos, nanoClock)));
+	}
+
+	@Override
+	public RSocket select(List<? extends RSocket> sockets) {
+		return PowerOfTwoChoices.select(sockets);
+	}
+
+	/**
+	 * Tracks latency and outstanding requests, availability drops as
+	 * {@code 1 / (1 + cost in milliseconds)}.
+	 */
+	static class LatencyTrackingRSocket extends RSocketProxy {
+
+		private final long decayNanos;
+
+		private final LongSupplier nanoClock;
+
+		// guarded by this
+		private double ewmaNanos;
+
+		private long lastSampleNanos;
+
+		private int outstanding;
+
+		LatencyTrackingRSocket(RSocket source, long decayNanos, LongSupplier nanoClock) {
+			super(source);
+			this.decayNanos = decayNanos;
+			this.nanoClock = nanoClock;
+			this.lastSampleNanos = nanoClock.getAsLong();
+		}
+
+		synchronized int outstanding() {
+			return outstanding;
+		}
+
+		/**
+		 * @return the average latency decayed to the current time.
+		 */
+		synchronized double latencyNanos() {
+			return decayed(nanoClock.getAsLong());
+		}
+
+		/**
+		 * @return the expected time for a new request in nanoseconds.
+		 */
+		synchronized double cost() {
+			double latency = decayed(nanoClock.getAsLong());
+			if (latency == 0 && outstanding > 0) {
+				// nothing known yet, avoid piling requests on the connection
+				return PENALTY_NANOS + outstanding;
+			}
+			return latency * (outstanding + 1);
+		}
+
+		private double decayed(long now) {
+			return ewmaNanos * weight(now);
+		}
+
+		// weight of the average after the time since the last sample
+		private double weight(long now) {
+			return Math.exp(-(double) Math.max(now - lastSampleNanos, 0) / decayNanos);
+		}
+
+		@Override
+		public Mono<Void> fireAndForget(Payload payload) {
+			return track(super.fireAndForget(payload), false);
+		}
+
+		@Override
+		public Mono<Payload> requestResponse(Payload payload) {
+			return track(super.requestResponse(payload), true);
+		}
+
+		@Override
+		public Flux<Payload> requestStream(Payload payload) {
+			return track(super.requestStream(payload));
+		}
+
+		@Override
+		public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+			return track(super.requestChannel(payloads));
+		}
+
+		@Override
+		public double availability() {
+			return super.availability() / (1 + cost() / TimeUnit.MILLISECONDS.toNanos(1));
+		}
+
+		private <T> Mono<T> track(Mono<T> request, boolean sampled) {
+			return Mono.defer(() -> {
+				Request tracked = new Request();
+				return request.doOnSubscribe(s -> tracked.start())
+						.doOnEach(signal -> tracked.firstSignal(sampled))
+						.doFinally(signal -> tracked.stop());
+			});
+		}
+
+		private <T> Flux<T> track(Flux<T> request) {
+			return Flux.defer(() -> {
+				Request tracked = new Request();
+				return request.doOnSubscribe(s -> tracked.start())
+						// only a stream ending at once is a response to the request itself
+						.doOnEach(signal -> tracked.firstSignal(!signal.isOnNext()))
+						.doFinally(signal -> tracked.stop());
+			});
+		}
+
+		synchronized void sample(long latencyNanos) {
+			long now = nanoClock.getAsLong();
+			double weight = weight(now);
+			double decayed = ewmaNanos * weight;
+			if (latencyNanos > decayed) {
+				// react to a slow connection at once
+				ewmaNanos = latencyNanos;
+			}
+			else {
+				ewmaNanos = decayed + latencyNanos * (1 - weight);
+			}
+			lastSampleNanos = now;
+		}
+
+		private synchronized void increment() {
+			outstanding++;
+		}
+
+		private synchronized void decrement() {
+			outstanding--;
+		}
+
+		private final class Request {
+
+			private long startNanos;
+
+			private boolean started;
+
+			private boolean signalled;
+
+			void start() {
+				startNanos = nanoClock.getAsLong();
+				started = true;
+				increment();
+			}
+
+			void firstSignal(boolean sampled) {
+				if (started && !signalled) {
+					signalled = true;
+					if (sampled) {
+						sample(nanoClock.getAsLong() - startNanos);
+					}
+				}
+			}
+
+			void stop() {
+				if (started) {
+					started = false;
+					decrement();
+				}
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.core.RSocketConnector;
+import io.rsocket.loadbalance.ClientLoadbalanceStrategy;
+import io.rsocket.plugins.RSocketInterceptor;
+import io.rsocket.util.RSocketProxy;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Picks the broker connection with the fewest outstanding requests of two chosen at
+ * random. Connections count their outstanding requests through a requester interceptor
+ * registered on {@link #initialize(RSocketConnector)} and report them through
+ * {@link RSocket#availability()}, which the pooled connections of a load balanced
+ * client pass through.
+ */
+public class LeastOutstandingLoadbalanceStrategy implements ClientLoadbalanceStrategy {
+
+	@Override
+	public void initialize(RSocketConnector connector) {
+		connector.interceptors(registry -> registry.forRequester((RSocketInterceptor) OutstandingRequestsRSocket::new));
+	}
+
+	@Override
+	public RSocket select(List<? extends RSocket> sockets) {
+		return PowerOfTwoChoices.select(sockets);
+	}
+
+	/**
+	 * Counts requests between subscription and termination, availability drops as
+	 * {@code 1 / (1 + outstanding)}.
+	 */
+	static class OutstandingRequestsRSocket extends RSocketProxy {
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		OutstandingRequestsRSocket(RSocket source) {
+			super(source);
+		}
+
+		int outstanding() {
+			return outstanding.get();
+		}
+
+		@Override
+		public Mono<Void> fireAndForget(Payload payload) {
+			return track(super.fireAndForget(payload));
+		}
+
+		@Override
+		public Mono<Payload> requestResponse(Payload payload) {
+			return track(super.requestResponse(payload));
+		}
+
+		@Override
+		public Flux<Payload> requestStream(Payload payload) {
+			return track(super.requestStream(payload));
+		}
+
+		@Override
+		public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+			return track(super.requestChannel(payloads));
+		}
+
+		@Override
+		public double availability() {
+			return super.availability() / (1 + outstanding.get());
+		}
+
+		private <T> Mono<T> track(Mono<T> request) {
+			return request.doOnSubscribe(s -> outstanding.incrementAndGet())
+					.doFinally(signal -> outstanding.decrementAndGet());
+		}
+
+		private <T> Flux<T> track(Flux<T> request) {
+			return request.doOnSubscribe(s -> outstanding.incrementAndGet())
+					.doFinally(signal -> outstanding.decrementAndGet());
+		}
+
+	}
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.rsocket.RSocket;
+
+/**
+ * Picks two distinct connections at random and keeps the one with the higher
+ * {@link RSocket#availability()}, the strategies report their load signal there. The
+ * pooled connection of a load balanced client has no availability until it connects,
+ * so like rsocket's weighted strategy does for connections without stats, one that is
+ * not disposed counts as idle and gets tried.
+ */
+final class PowerOfTwoChoices {
+
+	private PowerOfTwoChoices() {
+	}
+
+	static RSocket select(List<? extends RSocket> sockets) {
+		int size = sockets.size();
+		if (size == 1) {
+			return sockets.get(0);
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		int second = random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		RSocket rsocket1 = sockets.get(first);
+		RSocket rsocket2 = sockets.get(second);
+		return weight(rsocket1) >= weight(rsocket2) ? rsocket1 : rsocket2;
+	}
+
+	private static double weight(RSocket rsocket) {
+		double availability = rsocket.availability();
+		if (availability == 0 && !rsocket.isDisposed()) {
+			// not connected yet
+			return 1.0;
+		}
+		return availability;
+	}
+
+}
@@ -28,4 +28,8 @@ public interface Route {
 	void encodeAddressMetadata(CompositeByteBuf metadataHolder, String serviceName);
 
 	void encodeAddressMetadata(CompositeByteBuf metadataHolder, Consumer<Address.Builder> addressConsumer);
+
+	AddressTemplate addressTemplate(String serviceName);
+
+	AddressTemplate addressTemplate(Consumer<Address.Builder> addressConsumer);
 }
@@ -0,0 +1,593 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Immutable compressed set of route ordinals. Ordinals are split by their high 16 bits
+ * into containers that hold the low 16 bits, either as a sorted array while sparse or
+ * as a 65536 bit bitmap once dense. Updates copy only the affected container, so an
+ * index can replace bitmaps while readers keep using the previous instances. A
+ * {@link Builder} collects many updates and copies each affected container once.
+ */
+public final class RouteBitmap {
+
+	/** Containers switch between array and bitmap representation at this size. */
+	static final int ARRAY_MAX_SIZE = 4096;
+
+	private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+
+	private static final RouteBitmap EMPTY = new RouteBitmap(new char[0], new Container[0], 0);
+
+	// high 16 bits of the ordinals in each container, sorted
+	private final char[] keys;
+
+	private final Container[] containers;
+
+	private final int cardinality;
+
+	private RouteBitmap(char[] keys, Container[] containers, int cardinality) {
+		this.keys = keys;
+		this.containers = containers;
+		this.cardinality = cardinality;
+	}
+
+	public static RouteBitmap empty() {
+		return EMPTY;
+	}
+
+	public static RouteBitmap of(int... ordinals) {
+		RouteBitmap bitmap = EMPTY;
+		for (int ordinal : ordinals) {
+			bitmap = bitmap.with(ordinal);
+		}
+		return bitmap;
+	}
+
+	public int cardinality() {
+		return this.cardinality;
+	}
+
+	public boolean isEmpty() {
+		return this.cardinality == 0;
+	}
+
+	public boolean contains(int ordinal) {
+		int index = Arrays.binarySearch(keys, high(ordinal));
+		return index >= 0 && containers[index].contains(low(ordinal));
+	}
+
+	/**
+	 * @return a bitmap that also contains the ordinal, this bitmap if it already does.
+	 */
+	public RouteBitmap with(int ordinal) {
+		checkOrdinal(ordinal);
+		char high = high(ordinal);
+		int index = Arrays.binarySearch(keys, high);
+		if (index >= 0) {
+			Container container = containers[index];
+			if (container.contains(low(ordinal))) {
+				return this;
+			}
+			Container[] newContainers = containers.clone();
+			newContainers[index] = container.add(low(ordinal));
+			return new RouteBitmap(keys, newContainers, cardinality + 1);
+		}
+		int insertion = -index - 1;
+		char[] newKeys = new char[keys.length + 1];
+		Container[] newContainers = new Container[containers.length + 1];
+		System.arraycopy(keys, 0, newKeys, 0, insertion);
+		System.arraycopy(containers, 0, newContainers, 0, insertion);
+		newKeys[insertion] = high;
+		newContainers[insertion] = new ArrayContainer(new char[] { low(ordinal) });
+		System.arraycopy(keys, insertion, newKeys, insertion + 1, keys.length - insertion);
+		System.arraycopy(containers, insertion, newContainers, insertion + 1, containers.length - insertion);
+		return new RouteBitmap(newKeys, newContainers, cardinality + 1);
+	}
+
+	/**
+	 * @return a bitmap without the ordinal, this bitmap if it does not contain it.
+	 */
+	public RouteBitmap without(int ordinal) {
+		int index = Arrays.binarySearch(keys, high(ordinal));
+		if (index < 0 || !containers[index].contains(low(ordinal))) {
+			return this;
+		}
+		if (cardinality == 1) {
+			return EMPTY;
+		}
+		Container container = containers[index].remove(low(ordinal));
+		if (container != null) {
+			Container[] newContainers = containers.clone();
+			newContainers[index] = container;
+			return new RouteBitmap(keys, newContainers, cardinality - 1);
+		}
+		char[] newKeys = new char[keys.length - 1];
+		Container[] newContainers = new Container[containers.length - 1];
+		System.arraycopy(keys, 0, newKeys, 0, index);
+		System.arraycopy(containers, 0, newContainers, 0, index);
+		System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+		System.arraycopy(containers, index + 1, newContainers, index, containers.length - index - 1);
+		return new RouteBitmap(newKeys, newContainers, cardinality - 1);
+	}
+
+	/**
+	 * @return the intersection of this bitmap and the other.
+	 */
+	public RouteBitmap and(RouteBitmap other) {
+		if (this.isEmpty() || other.isEmpty()) {
+			return EMPTY;
+		}
+		if (this == other) {
+			return this;
+		}
+		int length = Math.min(keys.length, other.keys.length);
+		char[] newKeys = new char[length];
+		Container[] newContainers = new Container[length];
+		int size = 0;
+		int newCardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < keys.length && j < other.keys.length) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			}
+			else if (keys[i] > other.keys[j]) {
+				j++;
+			}
+			else {
+				Container container = containers[i].and(other.containers[j]);
+				if (container != null) {
+					newKeys[size] = keys[i];
+					newContainers[size++] = container;
+					newCardinality += container.cardinality();
+				}
+				i++;
+				j++;
+			}
+		}
+		if (size == 0) {
+			return EMPTY;
+		}
+		if (size < length) {
+			newKeys = Arrays.copyOf(newKeys, size);
+			newContainers = Arrays.copyOf(newContainers, size);
+		}
+		return new RouteBitmap(newKeys, newContainers, newCardinality);
+	}
+
+	/**
+	 * @param rank zero based position in ascending order.
+	 * @return the ordinal at the given rank.
+	 */
+	public int select(int rank) {
+		if (rank < 0 || rank >= cardinality) {
+			throw new NoSuchElementException("rank " + rank + " of " + cardinality);
+		}
+		for (int i = 0; i < containers.length; i++) {
+			int containerCardinality = containers[i].cardinality();
+			if (rank < containerCardinality) {
+				return (keys[i] << 16) | containers[i].select(rank);
+			}
+			rank -= containerCardinality;
+		}
+		throw new IllegalStateException("cardinality does not match containers");
+	}
+
+	/**
+	 * Calls the consumer with each ordinal in ascending order.
+	 */
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < containers.length; i++) {
+			containers[i].forEach(keys[i] << 16, consumer);
+		}
+	}
+
+	public int[] toArray() {
+		int[] ordinals = new int[cardinality];
+		int[] size = new int[1];
+		forEach(ordinal -> ordinals[size[0]++] = ordinal);
+		return ordinals;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		RouteBitmap other = (RouteBitmap) o;
+		return cardinality == other.cardinality && Arrays.equals(toArray(), other.toArray());
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(toArray());
+	}
+
+	@Override
+	public String toString() {
+		StringJoiner joiner = new StringJoiner(", ", "RouteBitmap{", "}");
+		forEach(ordinal -> joiner.add(String.valueOf(ordinal)));
+		return joiner.toString();
+	}
+
+	/**
+	 * @return a builder that starts from this bitmap.
+	 */
+	Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	private static char high(int ordinal) {
+		return (char) (ordinal >>> 16);
+	}
+
+	private static char low(int ordinal) {
+		return (char) ordinal;
+	}
+
+	private static void checkOrdinal(int ordinal) {
+		if (ordinal < 0) {
+			throw new IllegalArgumentException("ordinal must be >= 0");
+		}
+	}
+
+	private interface Container {
+
+		int cardinality();
+
+		boolean contains(char low);
+
+		Container add(char low);
+
+		/**
+		 * @return the container without the value or null when it would be empty.
+		 */
+		Container remove(char low);
+
+		/**
+		 * @return the intersection or null when it is empty.
+		 */
+		Container and(Container other);
+
+		char select(int rank);
+
+		void forEach(int high, IntConsumer consumer);
+
+		void copyTo(long[] words);
+
+	}
+
+	private static Container container(long[] words) {
+		int cardinality = 0;
+		for (long word : words) {
+			cardinality += Long.bitCount(word);
+		}
+		if (cardinality == 0) {
+			return null;
+		}
+		BitmapContainer bitmap = new BitmapContainer(words, cardinality);
+		return cardinality <= ARRAY_MAX_SIZE ? bitmap.toArray(cardinality, -1) : bitmap;
+	}
+
+	/**
+	 * Applies additions and removals to a bitmap in one pass. The containers changed are
+	 * copied into mutable words on first change and built once, the others are shared.
+	 */
+	static final class Builder {
+
+		private final RouteBitmap base;
+
+		// words of the changed containers by their high 16 bits
+		private final TreeMap<Character, long[]> changed = new TreeMap<>();
+
+		private Builder(RouteBitmap base) {
+			this.base = base;
+		}
+
+		Builder add(int ordinal) {
+			checkOrdinal(ordinal);
+			char low = low(ordinal);
+			words(high(ordinal))[low >>> 6] |= 1L << low;
+			return this;
+		}
+
+		Builder remove(int ordinal) {
+			char low = low(ordinal);
+			words(high(ordinal))[low >>> 6] &= ~(1L << low);
+			return this;
+		}
+
+		RouteBitmap build() {
+			if (changed.isEmpty()) {
+				return base;
+			}
+			int size = base.keys.length + changed.size();
+			char[] keys = new char[size];
+			Container[] containers = new Container[size];
+			int count = 0;
+			int cardinality = 0;
+			int i = 0;
+			Iterator<Map.Entry<Character, long[]>> entries = changed.entrySet().iterator();
+			Map.Entry<Character, long[]> entry = entries.next();
+			while (i < base.keys.length || entry != null) {
+				char key;
+				Container container;
+				if (entry == null || (i < base.keys.length && base.keys[i] < entry.getKey())) {
+					key = base.keys[i];
+					container = base.containers[i++];
+				}
+				else {
+					key = entry.getKey();
+					container = container(entry.getValue());
+					if (i < base.keys.length && base.keys[i] == key) {
+						i++;
+					}
+					entry = entries.hasNext() ? entries.next() : null;
+				}
+				if (container != null) {
+					keys[count] = key;
+					containers[count++] = container;
+					cardinality += container.cardinality();
+				}
+			}
+			if (cardinality == 0) {
+				return EMPTY;
+			}
+			return new RouteBitmap(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count), cardinality);
+		}
+
+		private long[] words(char high) {
+			long[] words = changed.get(high);
+			if (words == null) {
+				words = new long[BITMAP_WORDS];
+				int index = Arrays.binarySearch(base.keys, high);
+				if (index >= 0) {
+					base.containers[index].copyTo(words);
+				}
+				changed.put(high, words);
+			}
+			return words;
+		}
+
+	}
+
+	private static final class ArrayContainer implements Container {
+
+		private final char[] values;
+
+		private ArrayContainer(char[] values) {
+			this.values = values;
+		}
+
+		@Override
+		public int cardinality() {
+			return values.length;
+		}
+
+		@Override
+		public boolean contains(char low) {
+			return Arrays.binarySearch(values, low) >= 0;
+		}
+
+		@Override
+		public Container add(char low) {
+			if (values.length == ARRAY_MAX_SIZE) {
+				return BitmapContainer.from(this).add(low);
+			}
+			int insertion = -Arrays.binarySearch(values, low) - 1;
+			char[] newValues = new char[values.length + 1];
+			System.arraycopy(values, 0, newValues, 0, insertion);
+			newValues[insertion] = low;
+			System.arraycopy(values, insertion, newValues, insertion + 1, values.length - insertion);
+			return new ArrayContainer(newValues);
+		}
+
+		@Override
+		public Container remove(char low) {
+			if (values.length == 1) {
+				return null;
+			}
+			int index = Arrays.binarySearch(values, low);
+			char[] newValues = new char[values.length - 1];
+			System.arraycopy(values, 0, newValues, 0, index);
+			System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+			return new ArrayContainer(newValues);
+		}
+
+		@Override
+		public Container and(Container other) {
+			char[] result = new char[values.length];
+			int size = 0;
+			if (other instanceof ArrayContainer) {
+				char[] otherValues = ((ArrayContainer) other).values;
+				int i = 0;
+				int j = 0;
+				while (i < values.length && j < otherValues.length) {
+					if (values[i] < otherValues[j]) {
+						i++;
+					}
+					else if (values[i] > otherValues[j]) {
+						j++;
+					}
+					else {
+						result[size++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else {
+				for (char value : values) {
+					if (other.contains(value)) {
+						result[size++] = value;
+					}
+				}
+			}
+			if (size == 0) {
+				return null;
+			}
+			return size == values.length ? this : new ArrayContainer(Arrays.copyOf(result, size));
+		}
+
+		@Override
+		public char select(int rank) {
+			return values[rank];
+		}
+
+		@Override
+		public void forEach(int high, IntConsumer consumer) {
+			for (char value : values) {
+				consumer.accept(high | value);
+			}
+		}
+
+		@Override
+		public void copyTo(long[] words) {
+			for (char value : values) {
+				words[value >>> 6] |= 1L << value;
+			}
+		}
+
+	}
+
+	private static final class BitmapContainer implements Container {
+
+		private final long[] words;
+
+		private final int cardinality;
+
+		private BitmapContainer(long[] words, int cardinality) {
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		private static BitmapContainer from(ArrayContainer array) {
+			long[] words = new long[BITMAP_WORDS];
+			for (char value : array.values) {
+				words[value >>> 6] |= 1L << value;
+			}
+			return new BitmapContainer(words, array.values.length);
+		}
+
+		@Override
+		public int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		public boolean contains(char low) {
+			return (words[low >>> 6] & (1L << low)) != 0;
+		}
+
+		@Override
+		public Container add(char low) {
+			long[] newWords = words.clone();
+			newWords[low >>> 6] |= 1L << low;
+			return new BitmapContainer(newWords, cardinality + 1);
+		}
+
+		@Override
+		public Container remove(char low) {
+			if (cardinality - 1 <= ARRAY_MAX_SIZE) {
+				return toArray(cardinality - 1, low);
+			}
+			long[] newWords = words.clone();
+			newWords[low >>> 6] &= ~(1L << low);
+			return new BitmapContainer(newWords, cardinality - 1);
+		}
+
+		@Override
+		public Container and(Container other) {
+			if (other instanceof ArrayContainer) {
+				return other.and(this);
+			}
+			long[] otherWords = ((BitmapContainer) other).words;
+			long[] newWords = new long[BITMAP_WORDS];
+			int newCardinality = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				newWords[i] = words[i] & otherWords[i];
+				newCardinality += Long.bitCount(newWords[i]);
+			}
+			if (newCardinality == 0) {
+				return null;
+			}
+			BitmapContainer result = new BitmapContainer(newWords, newCardinality);
+			return newCardinality <= ARRAY_MAX_SIZE ? result.toArray(newCardinality, -1) : result;
+		}
+
+		@Override
+		public char select(int rank) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				int bits = Long.bitCount(words[i]);
+				if (rank < bits) {
+					long word = words[i];
+					for (int r = 0; r < rank; r++) {
+						word &= word - 1;
+					}
+					return (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+				}
+				rank -= bits;
+			}
+			throw new IllegalStateException("cardinality does not match words");
+		}
+
+		@Override
+		public void forEach(int high, IntConsumer consumer) {
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1) {
+					consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+				}
+			}
+		}
+
+		@Override
+		public void copyTo(long[] words) {
+			System.arraycopy(this.words, 0, words, 0, BITMAP_WORDS);
+		}
+
+		/**
+		 * @param size the cardinality after skipping.
+		 * @param skip a value to leave out or -1.
+		 */
+		private ArrayContainer toArray(int size, int skip) {
+			char[] values = new char[size];
+			int index = 0;
+			for (int i = 0; i < BITMAP_WORDS; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1) {
+					int value = (i << 6) | Long.numberOfTrailingZeros(word);
+					if (value != skip) {
+						values[index++] = (char) value;
+					}
+				}
+			}
+			return new ArrayContainer(values);
+		}
+
+	}
+
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.IdToLongMap;
+import io.rsocket.broker.common.Key;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import io.rsocket.broker.frames.Address;
+import io.rsocket.broker.frames.BrokerFrame;
+import io.rsocket.broker.frames.BrokerFrameHandler;
+import io.rsocket.broker.frames.FrameType;
+import io.rsocket.broker.frames.RouteEventBatch;
+import io.rsocket.broker.frames.RouteJoin;
+import io.rsocket.broker.frames.RouteRemove;
+import io.rsocket.broker.frames.RoutingType;
+import io.rsocket.broker.frames.Utf8InternCache;
+
+/**
+ * Local view of the routes known to the broker cluster, built from {@link RouteJoin} and
+ * {@link RouteRemove} frames. Each route gets an ordinal and every tag of the route,
+ * including its service name, maps to a {@link RouteBitmap} of the ordinals that have
+ * it, so an {@link Address} resolves by intersecting one bitmap per tag.
+ *
+ * Updates are serialized and replace immutable bitmaps, queries never lock and see each
+ * bitmap either before or after an update. The events of a {@link RouteEventBatch} are
+ * applied under one lock and each bitmap they touch is built once and published at the
+ * end of the batch, so routes may be ahead of the bitmaps until then. A query that runs concurrently with updates
+ * may still see a route that has just left, resolved routes are a hint and the broker
+ * remains authoritative. The ordinal of a removed route is reused by later joins, so
+ * routes resolved from a bitmap are checked against the queried tags again.
+ */
+public class RoutingIndex {
+
+	private static final long MISSING = -1;
+
+	private final Map<Key, Map<String, RouteBitmap>> index = new ConcurrentHashMap<>();
+
+	private final IdToLongMap ordinals = new IdToLongMap(64, MISSING);
+
+	private final Utf8InternCache cache = new Utf8InternCache();
+
+	private final FrameHandler frameHandler = new FrameHandler();
+
+	private volatile RouteJoin[] routes = new RouteJoin[64];
+
+	private volatile RouteBitmap all = RouteBitmap.empty();
+
+	// ordinals of removed routes, reused before growing
+	private int[] free = new int[16];
+
+	private int freeSize;
+
+	private int nextOrdinal;
+
+	// bitmaps being updated by the batch in progress, null outside of a batch
+	private Map<Key, Map<String, RouteBitmap.Builder>> pending;
+
+	private RouteBitmap.Builder pendingAll;
+
+	/**
+	 * Applies a {@link RouteJoin}, {@link RouteRemove} or {@link RouteEventBatch}, other
+	 * frames are ignored.
+	 */
+	public void accept(BrokerFrame frame) {
+		if (frame instanceof RouteJoin) {
+			join((RouteJoin) frame);
+		}
+		else if (frame instanceof RouteRemove) {
+			remove((RouteRemove) frame);
+		}
+		else if (frame instanceof RouteEventBatch) {
+			apply((RouteEventBatch) frame);
+		}
+	}
+
+	/**
+	 * Applies an encoded frame, see {@link #accept(BrokerFrame)}.
+	 */
+	public void accept(ByteBuf byteBuf) {
+		BrokerFrameHandler.dispatch(byteBuf, frameHandler);
+	}
+
+	/**
+	 * Adds a route or replaces it when the join is not older than the current one.
+	 */
+	public synchronized void join(RouteJoin routeJoin) {
+		Id routeId = routeJoin.getRouteId();
+		long existing = ordinals.get(routeId);
+		if (existing != MISSING) {
+			RouteJoin current = routes[(int) existing];
+			if (current.getTimestamp() > routeJoin.getTimestamp()) {
+				return;
+			}
+			unindex((int) existing, current);
+			release((int) existing);
+			ordinals.remove(routeId);
+		}
+		int ordinal = acquire();
+		RouteJoin[] current = routes;
+		if (ordinal >= current.length) {
+			current = Arrays.copyOf(current, current.length << 1);
+		}
+		current[ordinal] = routeJoin;
+		// publish the route before any bitmap that refers to it
+		routes = current;
+		ordinals.put(routeId, ordinal);
+		index(ordinal, Key.of(WellKnownKey.SERVICE_NAME), routeJoin.getServiceName());
+		Tags tags = routeJoin.getTags();
+		for (int i = 0; i < tags.size(); i++) {
+			Key key = tags.keyAt(i);
+			if (key.getWellKnownKey() != WellKnownKey.SERVICE_NAME) {
+				index(ordinal, key, tags.valueAt(i));
+			}
+		}
+		if (pendingAll != null) {
+			pendingAll.add(ordinal);
+		}
+		else {
+			all = all.with(ordinal);
+		}
+	}
+
+	/**
+	 * Removes a route unless it joined again after the remove.
+	 */
+	public synchronized void remove(RouteRemove routeRemove) {
+		long existing = ordinals.get(routeRemove.getRouteId());
+		if (existing == MISSING) {
+			return;
+		}
+		RouteJoin current = routes[(int) existing];
+		if (current.getTimestamp() > routeRemove.getTimestamp()) {
+			return;
+		}
+		unindex((int) existing, current);
+		release((int) existing);
+		ordinals.remove(routeRemove.getRouteId());
+	}
+
+	/**
+	 * @return the number of routes.
+	 */
+	public int size() {
+		return all.cardinality();
+	}
+
+	/**
+	 * @return the ordinals of the routes that have all of the given tags, all routes for
+	 * empty tags.
+	 */
+	public RouteBitmap query(Tags tags) {
+		if (tags.isEmpty()) {
+			return all;
+		}
+		List<RouteBitmap> bitmaps = new ArrayList<>(tags.size());
+		for (int i = 0; i < tags.size(); i++) {
+			Map<String, RouteBitmap> values = index.get(canonical(tags.keyAt(i)));
+			RouteBitmap bitmap = values == null ? null : values.get(tags.valueAt(i));
+			if (bitmap == null) {
+				return RouteBitmap.empty();
+			}
+			bitmaps.add(bitmap);
+		}
+		// intersect the most selective bitmaps first
+		bitmaps.sort((b1, b2) -> Integer.compare(b1.cardinality(), b2.cardinality()));
+		RouteBitmap result = bitmaps.get(0);
+		for (int i = 1; i < bitmaps.size() && !result.isEmpty(); i++) {
+			result = result.and(bitmaps.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return the route for an ordinal of a {@link RouteBitmap} or null if it has left.
+	 * The ordinal may belong to a route that joined since the bitmap was queried.
+	 */
+	public RouteJoin route(int ordinal) {
+		RouteJoin[] current = routes;
+		return ordinal < current.length ? current[ordinal] : null;
+	}
+
+	/**
+	 * @return the routes the broker would consider for the address, one for
+	 * {@link RoutingType#UNICAST}, all matching routes otherwise.
+	 */
+	public List<RouteJoin> resolve(Address address) {
+		if (address.getRoutingType() == RoutingType.UNICAST) {
+			RouteJoin route = unicast(address);
+			return route == null ? Collections.emptyList() : Collections.singletonList(route);
+		}
+		return multicast(address);
+	}
+
+	/**
+	 * @return a random route matching the address or null if there is none.
+	 */
+	public RouteJoin unicast(Address address) {
+		Tags tags = address.getTags();
+		RouteBitmap matches = query(tags);
+		// a concurrent remove may have cleared or reused the picked ordinal
+		for (int attempt = 0; attempt < 3 && !matches.isEmpty(); attempt++) {
+			RouteJoin route = route(matches.select(ThreadLocalRandom.current().nextInt(matches.cardinality())));
+			if (route != null && matches(route, tags)) {
+				return route;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return all routes matching the address.
+	 */
+	public List<RouteJoin> multicast(Address address) {
+		Tags tags = address.getTags();
+		RouteBitmap matches = query(tags);
+		List<RouteJoin> result = new ArrayList<>(matches.cardinality());
+		matches.forEach(ordinal -> {
+			RouteJoin route = route(ordinal);
+			if (route != null && matches(route, tags)) {
+				result.add(route);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Picks the route of a shard by rendezvous hashing of the route ids, so every client
+	 * with the same view picks the same route and only the shards of a leaving route
+	 * move.
+	 * @param shardHash the hash of the shard key of the request.
+	 * @return the route for the shard or null if no route matches the address.
+	 */
+	public RouteJoin shard(Address address, int shardHash) {
+		Tags tags = address.getTags();
+		RouteBitmap matches = query(tags);
+		RouteJoin[] current = routes;
+		RouteJoin selected = null;
+		long selectedWeight = Long.MIN_VALUE;
+		int[] candidates = matches.toArray();
+		for (int ordinal : candidates) {
+			RouteJoin route = ordinal < current.length ? current[ordinal] : null;
+			if (route == null || !matches(route, tags)) {
+				continue;
+			}
+			long weight = mix(((long) route.getRouteId().hashCode() << 32) ^ shardHash);
+			if (selected == null || weight > selectedWeight) {
+				selected = route;
+				selectedWeight = weight;
+			}
+		}
+		return selected;
+	}
+
+	private static boolean matches(RouteJoin route, Tags tags) {
+		for (int i = 0; i < tags.size(); i++) {
+			Key key = canonical(tags.keyAt(i));
+			String value = key.getWellKnownKey() == WellKnownKey.SERVICE_NAME ? route.getServiceName()
+					: route.getTags().get(key);
+			if (!tags.valueAt(i).equals(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private synchronized void apply(RouteEventBatch batch) {
+		// a batch nested in a batch joins the outer one
+		boolean outer = pending == null;
+		if (outer) {
+			pending = new HashMap<>();
+			pendingAll = all.toBuilder();
+		}
+		try {
+			for (BrokerFrame event : batch.getEvents()) {
+				accept(event);
+			}
+		}
+		finally {
+			if (outer) {
+				commit();
+			}
+		}
+	}
+
+	private void commit() {
+		pending.forEach((key, builders) -> builders.forEach((value, builder) -> {
+			RouteBitmap bitmap = builder.build();
+			if (bitmap.isEmpty()) {
+				Map<String, RouteBitmap> values = index.get(key);
+				if (values != null) {
+					values.remove(value);
+				}
+			}
+			else {
+				index.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(value, bitmap);
+			}
+		}));
+		all = pendingAll.build();
+		pending = null;
+		pendingAll = null;
+	}
+
+	private RouteBitmap.Builder builder(Key key, String value) {
+		return pending.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(value, v -> {
+			Map<String, RouteBitmap> values = index.get(key);
+			RouteBitmap bitmap = values == null ? null : values.get(value);
+			return (bitmap == null ? RouteBitmap.empty() : bitmap).toBuilder();
+		});
+	}
+
+	private void index(int ordinal, Key key, String value) {
+		if (value == null) {
+			return;
+		}
+		if (pending != null) {
+			builder(canonical(key), value).add(ordinal);
+			return;
+		}
+		Map<String, RouteBitmap> values = index.computeIfAbsent(canonical(key), k -> new ConcurrentHashMap<>());
+		values.put(value, values.getOrDefault(value, RouteBitmap.empty()).with(ordinal));
+	}
+
+	private void unindex(int ordinal, RouteJoin routeJoin) {
+		if (pendingAll != null) {
+			pendingAll.remove(ordinal);
+		}
+		else {
+			all = all.without(ordinal);
+		}
+		unindex(ordinal, Key.of(WellKnownKey.SERVICE_NAME), routeJoin.getServiceName());
+		Tags tags = routeJoin.getTags();
+		for (int i = 0; i < tags.size(); i++) {
+			Key key = tags.keyAt(i);
+			if (key.getWellKnownKey() != WellKnownKey.SERVICE_NAME) {
+				unindex(ordinal, key, tags.valueAt(i));
+			}
+		}
+		routes[ordinal] = null;
+	}
+
+	private void unindex(int ordinal, Key key, String value) {
+		if (pending != null) {
+			if (value != null) {
+				builder(canonical(key), value).remove(ordinal);
+			}
+			return;
+		}
+		Map<String, RouteBitmap> values = value == null ? null : index.get(canonical(key));
+		RouteBitmap bitmap = values == null ? null : values.get(value);
+		if (bitmap == null) {
+			return;
+		}
+		RouteBitmap updated = bitmap.without(ordinal);
+		if (updated.isEmpty()) {
+			values.remove(value);
+		}
+		else {
+			values.put(value, updated);
+		}
+	}
+
+	private int acquire() {
+		if (freeSize > 0) {
+			return free[--freeSize];
+		}
+		return nextOrdinal++;
+	}
+
+	private void release(int ordinal) {
+		if (freeSize == free.length) {
+			free = Arrays.copyOf(free, freeSize << 1);
+		}
+		free[freeSize++] = ordinal;
+	}
+
+	private static Key canonical(Key key) {
+		if (key.getWellKnownKey() != null) {
+			return Key.of(key.getWellKnownKey());
+		}
+		return Key.of(key.getKey());
+	}
+
+	// murmur3 64-bit finalizer
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private final class FrameHandler implements BrokerFrameHandler<Void> {
+
+		@Override
+		public Void onRouteSetup(ByteBuf byteBuf, int flags) {
+			return null;
+		}
+
+		@Override
+		public Void onRouteJoin(ByteBuf byteBuf, int flags) {
+			// decoded outside of the lock, the cache is safe to share
+			join(RouteJoin.from(byteBuf, cache));
+			return null;
+		}
+
+		@Override
+		public Void onRouteRemove(ByteBuf byteBuf, int flags) {
+			remove(RouteRemove.from(byteBuf));
+			return null;
+		}
+
+		@Override
+		public Void onBrokerInfo(ByteBuf byteBuf, int flags) {
+			return null;
+		}
+
+		@Override
+		public Void onAddress(ByteBuf byteBuf, int flags) {
+			return null;
+		}
+
+		@Override
+		public Void onRouteEventBatch(ByteBuf byteBuf, int flags) {
+			accept(RouteEventBatch.from(byteBuf, cache));
+			return null;
+		}
+
+		@Override
+		public Void onUnknown(ByteBuf byteBuf, FrameType frameType, int flags) {
+			return null;
+		}
+
+	}
+
+}
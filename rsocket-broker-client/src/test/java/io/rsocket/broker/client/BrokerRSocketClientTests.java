@@ -58,6 +58,27 @@ public class BrokerRSocketClientTests {
 		assertThat(address.getTags().get("mykey")).isEqualTo("mykeyvalue");
 	}
 
+	@Test
+	public void testAddressTemplate() {
+		Route route = setupRoute();
+
+		AddressTemplate template = route.addressTemplate(tags -> tags.with(SERVICE_NAME, "remoteservice")
+				.with("mykey", "mykeyvalue"));
+
+		for (int i = 0; i < 2; i++) {
+			CompositeByteBuf composite = route.allocator().compositeBuffer();
+			template.encodeAddressMetadata(composite);
+
+			Address address = assertAddress(composite);
+			assertThat(address.getTags().asMap()).hasSize(2);
+			assertThat(address.getTags().get("mykey")).isEqualTo("mykeyvalue");
+			composite.release();
+		}
+
+		template.dispose();
+		assertThat(template.isDisposed()).isTrue();
+	}
+
 	private Address assertAddress(CompositeByteBuf composite) {
 		CompositeMetadata compositeMetadata = new CompositeMetadata(composite, true);
 		Entry entry = compositeMetadata.stream().findFirst()
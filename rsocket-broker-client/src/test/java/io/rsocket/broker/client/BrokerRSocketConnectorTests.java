@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.rsocket.DuplexConnection;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.IdGenerator;
+import io.rsocket.broker.common.MimeTypes;
+import io.rsocket.broker.frames.RouteSetupFlyweight;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.core.Resume;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.transport.ClientTransport;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BrokerRSocketConnectorTests {
+
+	@Test
+	public void setupPayloadIsReusedAcrossConnections() {
+		List<Id> routeIds = new CopyOnWriteArrayList<>();
+		List<String> customMetadata = new CopyOnWriteArrayList<>();
+		Disposable server = RSocketServer.create((setup, sendingSocket) -> {
+			for (CompositeMetadata.Entry entry : new CompositeMetadata(setup.metadata(), false)) {
+				if (MimeTypes.BROKER_FRAME_MIME_TYPE.equals(entry.getMimeType())) {
+					routeIds.add(RouteSetupFlyweight.routeId(entry.getContent()));
+				}
+				else {
+					customMetadata.add(entry.getContent().toString(StandardCharsets.UTF_8));
+				}
+			}
+			return Mono.just(new RSocket() {
+			});
+		}).bind(LocalServerTransport.create("setupPayloadIsReused")).block();
+
+		ByteBuf custom = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "custom");
+		try {
+			BrokerRSocketConnector connector = BrokerRSocketConnector.create()
+					.idGenerator(IdGenerator.timeOrdered())
+					.serviceName("localservice")
+					.setupMetadata(custom, "text/plain")
+					.reconnect(Duration.ofMillis(10), Duration.ofSeconds(1), 0.5);
+
+			for (int i = 0; i < 3; i++) {
+				RSocket rsocket = connector.connect(LocalClientTransport.create("setupPayloadIsReused")).block();
+				rsocket.dispose();
+			}
+
+			assertThat(connector.getRouteId()).isNotNull();
+			assertThat(routeIds).hasSize(3).containsOnly(connector.getRouteId());
+			assertThat(customMetadata).containsExactly("custom", "custom", "custom");
+			// the connector copied the buffer, it is still the caller's
+			assertThat(custom.refCnt()).isEqualTo(1);
+		}
+		finally {
+			custom.release();
+			server.dispose();
+		}
+	}
+
+	@Test
+	public void setupPayloadIsRebuiltForReconnects() {
+		List<String> customMetadata = new CopyOnWriteArrayList<>();
+		Disposable server = RSocketServer.create((setup, sendingSocket) -> {
+			for (CompositeMetadata.Entry entry : new CompositeMetadata(setup.metadata(), false)) {
+				if (!MimeTypes.BROKER_FRAME_MIME_TYPE.equals(entry.getMimeType())) {
+					customMetadata.add(entry.getContent().toString(StandardCharsets.UTF_8));
+				}
+			}
+			return Mono.just(new RSocket() {
+			});
+		}).bind(LocalServerTransport.create("setupPayloadIsRebuilt")).block();
+
+		ByteBuf firstMetadata = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "first");
+		ByteBuf secondMetadata = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "second");
+		try {
+			BrokerRSocketConnector connector = BrokerRSocketConnector.create()
+					.serviceName("localservice")
+					.setupMetadata(firstMetadata, "text/plain");
+			BrokerRSocketClient client = connector.toRSocketClient(LocalClientTransport.create("setupPayloadIsRebuilt"));
+
+			RSocket first = client.source().block();
+			// a setter after the client is created changes the setup of the next connection
+			connector.setupMetadata(secondMetadata, "text/plain");
+			first.dispose();
+			first.onClose().block();
+			RSocket second = client.source().block();
+
+			assertThat(second).isNotSameAs(first);
+			assertThat(customMetadata).containsExactly("first", "first", "second");
+			client.dispose();
+		}
+		finally {
+			firstMetadata.release();
+			secondMetadata.release();
+			server.dispose();
+		}
+	}
+
+	@Test
+	public void setupBuffersStayOwnedByTheCaller() {
+		ByteBuf first = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "first");
+		ByteBuf second = ByteBufUtil.writeUtf8(ByteBufAllocator.DEFAULT, "second");
+
+		BrokerRSocketConnector.create().setupData(first).setupData(second)
+				.setupMetadata(second, "text/plain");
+
+		assertThat(first.refCnt()).isEqualTo(1);
+		assertThat(second.refCnt()).isEqualTo(1);
+		assertThat(second.readableBytes()).isEqualTo(6);
+		first.release();
+		second.release();
+	}
+
+	@Test
+	public void streamContinuesAfterResume() {
+		AtomicInteger subscriptions = new AtomicInteger();
+		Disposable server = RSocketServer.create((setup, sendingSocket) -> Mono.just(new RSocket() {
+			@Override
+			public Flux<Payload> requestStream(Payload payload) {
+				payload.release();
+				return Flux.interval(Duration.ofMillis(20))
+						.doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+						.map(i -> DefaultPayload.create(String.valueOf(i)));
+			}
+		})).resume(new Resume()).bind(LocalServerTransport.create("streamContinuesAfterResume")).block();
+
+		List<DuplexConnection> connections = new CopyOnWriteArrayList<>();
+		ClientTransport transport = new ClientTransport() {
+			@Override
+			public Mono<DuplexConnection> connect() {
+				return LocalClientTransport.create("streamContinuesAfterResume").connect().doOnNext(connections::add);
+			}
+		};
+		try {
+			RSocket rsocket = BrokerRSocketConnector.create()
+					.serviceName("localservice")
+					.resume(BrokerRSocketConnector.resume(Duration.ofMinutes(1), 1 << 16)
+							.retry(Retry.fixedDelay(10, Duration.ofMillis(50))))
+					.connect(transport).block();
+
+			List<String> values = rsocket.requestStream(DefaultPayload.create("stream"))
+					.map(Payload::getDataUtf8)
+					.doOnNext(value -> {
+						if (value.equals("2")) {
+							// break the connection under the stream
+							Schedulers.boundedElastic().schedule(() -> connections.get(0).dispose());
+						}
+					})
+					.take(10)
+					.collectList()
+					.block(Duration.ofSeconds(10));
+
+			assertThat(values).containsExactly("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+			assertThat(connections).hasSize(2);
+			assertThat(subscriptions).hasValue(1);
+			rsocket.dispose();
+		}
+		finally {
+			server.dispose();
+		}
+	}
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.broker.client.LatencyAwareLoadbalanceStrategy.LatencyTrackingRSocket;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyAwareLoadbalanceStrategyTests {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void tracksLatencyOfFirstResponse() {
+		AtomicLong clock = new AtomicLong();
+		Sinks.One<Payload> response = Sinks.one();
+		LatencyTrackingRSocket rsocket = new LatencyTrackingRSocket(new RSocket() {
+			@Override
+			public Mono<Payload> requestResponse(Payload payload) {
+				return response.asMono();
+			}
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+
+		rsocket.requestResponse(DefaultPayload.create("request")).subscribe();
+		assertThat(rsocket.outstanding()).isEqualTo(1);
+		clock.addAndGet(5 * MILLIS);
+		response.tryEmitValue(DefaultPayload.create("response"));
+
+		assertThat(rsocket.outstanding()).isZero();
+		// a slower sample is taken at once
+		assertThat(rsocket.latencyNanos()).isEqualTo(5.0 * MILLIS);
+		assertThat(rsocket.availability()).isCloseTo(1.0 / 6, within(1e-9));
+	}
+
+	@Test
+	public void fireAndForgetIsNotSampled() {
+		AtomicLong clock = new AtomicLong();
+		Sinks.Empty<Void> written = Sinks.empty();
+		LatencyTrackingRSocket rsocket = new LatencyTrackingRSocket(new RSocket() {
+			@Override
+			public Mono<Void> fireAndForget(Payload payload) {
+				return written.asMono();
+			}
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+
+		rsocket.fireAndForget(DefaultPayload.create("request")).subscribe();
+		assertThat(rsocket.outstanding()).isEqualTo(1);
+		clock.addAndGet(MILLIS);
+		written.tryEmitEmpty();
+
+		assertThat(rsocket.outstanding()).isZero();
+		assertThat(rsocket.latencyNanos()).isZero();
+	}
+
+	@Test
+	public void streamIsSampledOnlyWhenItEndsBeforeItsFirstElement() {
+		AtomicLong clock = new AtomicLong();
+		Sinks.Many<Payload> events = Sinks.many().unicast().onBackpressureBuffer();
+		Sinks.Many<Payload> rejected = Sinks.many().unicast().onBackpressureBuffer();
+		LatencyTrackingRSocket rsocket = new LatencyTrackingRSocket(new RSocket() {
+			@Override
+			public Flux<Payload> requestStream(Payload payload) {
+				return payload.getDataUtf8().equals("events") ? events.asFlux() : rejected.asFlux();
+			}
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+
+		// the first event of a subscription comes whenever the event happens
+		rsocket.requestStream(DefaultPayload.create("events")).subscribe();
+		clock.addAndGet(Duration.ofMinutes(5).toNanos());
+		events.tryEmitNext(DefaultPayload.create("event"));
+		assertThat(rsocket.outstanding()).isEqualTo(1);
+		assertThat(rsocket.latencyNanos()).isZero();
+		events.tryEmitComplete();
+		assertThat(rsocket.outstanding()).isZero();
+		assertThat(rsocket.latencyNanos()).isZero();
+
+		// an error in place of the first element is the response to the request
+		rsocket.requestStream(DefaultPayload.create("rejected")).subscribe(payload -> {
+		}, error -> {
+		});
+		clock.addAndGet(5 * MILLIS);
+		rejected.tryEmitError(new IllegalStateException("rejected"));
+		assertThat(rsocket.latencyNanos()).isEqualTo(5.0 * MILLIS);
+	}
+
+	@Test
+	public void fasterSamplesDecay() {
+		AtomicLong clock = new AtomicLong();
+		LatencyTrackingRSocket rsocket = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+
+		rsocket.sample(10 * MILLIS);
+		clock.addAndGet(Duration.ofSeconds(10).toNanos());
+		rsocket.sample(0);
+
+		assertThat(rsocket.latencyNanos()).isCloseTo(10.0 * MILLIS / Math.E, within(1.0));
+	}
+
+	@Test
+	public void selectsLowerCost() {
+		LatencyAwareLoadbalanceStrategy strategy = new LatencyAwareLoadbalanceStrategy();
+		LatencyTrackingRSocket fast = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), System::nanoTime);
+		LatencyTrackingRSocket slow = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), System::nanoTime);
+		fast.sample(MILLIS);
+		slow.sample(50 * MILLIS);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(strategy.select(Arrays.asList(slow, fast))).isSameAs(fast);
+		}
+	}
+
+	@Test
+	public void slowSampleDecaysWithoutNewSamples() {
+		AtomicLong clock = new AtomicLong();
+		LatencyTrackingRSocket slow = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+		LatencyTrackingRSocket fast = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+		slow.sample(500 * MILLIS);
+		fast.sample(MILLIS);
+		assertThat(slow.cost()).isGreaterThan(fast.cost());
+
+		// the slow connection is not sampled again, its cost still falls
+		clock.addAndGet(Duration.ofSeconds(120).toNanos());
+		fast.sample(MILLIS);
+		assertThat(slow.latencyNanos()).isCloseTo(500.0 * MILLIS * Math.exp(-12), within(1.0));
+		assertThat(slow.cost()).isLessThan(fast.cost());
+	}
+
+	@Test
+	public void unsampledConnectionWithOutstandingRequestsIsPenalized() {
+		AtomicLong clock = new AtomicLong();
+		LatencyTrackingRSocket fresh = new LatencyTrackingRSocket(new RSocket() {
+			@Override
+			public Mono<Payload> requestResponse(Payload payload) {
+				return Mono.never();
+			}
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+		LatencyTrackingRSocket sampled = new LatencyTrackingRSocket(new RSocket() {
+		}, Duration.ofSeconds(10).toNanos(), clock::get);
+		sampled.sample(50 * MILLIS);
+
+		assertThat(fresh.cost()).isZero();
+		fresh.requestResponse(DefaultPayload.create("request")).subscribe();
+		assertThat(fresh.cost()).isGreaterThanOrEqualTo(LatencyAwareLoadbalanceStrategy.PENALTY_NANOS);
+		assertThat(fresh.availability()).isLessThan(sampled.availability());
+	}
+
+}
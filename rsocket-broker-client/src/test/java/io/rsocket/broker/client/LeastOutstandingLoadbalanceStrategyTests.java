@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.broker.client.LeastOutstandingLoadbalanceStrategy.OutstandingRequestsRSocket;
+import io.rsocket.core.RSocketServer;
+import io.rsocket.loadbalance.LoadbalanceTarget;
+import io.rsocket.transport.local.LocalClientTransport;
+import io.rsocket.transport.local.LocalServerTransport;
+import io.rsocket.util.DefaultPayload;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LeastOutstandingLoadbalanceStrategyTests {
+
+	@Test
+	public void countsOutstandingRequests() {
+		Sinks.One<Payload> response = Sinks.one();
+		OutstandingRequestsRSocket rsocket = new OutstandingRequestsRSocket(new RSocket() {
+			@Override
+			public Mono<Payload> requestResponse(Payload payload) {
+				return response.asMono();
+			}
+		});
+
+		Disposable first = rsocket.requestResponse(DefaultPayload.create("1")).subscribe();
+		rsocket.requestResponse(DefaultPayload.create("2")).subscribe();
+		assertThat(rsocket.outstanding()).isEqualTo(2);
+		assertThat(rsocket.availability()).isEqualTo(1.0 / 3);
+
+		first.dispose();
+		assertThat(rsocket.outstanding()).isEqualTo(1);
+		response.tryEmitValue(DefaultPayload.create("response"));
+		assertThat(rsocket.outstanding()).isZero();
+		assertThat(rsocket.availability()).isEqualTo(1.0);
+	}
+
+	@Test
+	public void selectsLeastOutstanding() {
+		LeastOutstandingLoadbalanceStrategy strategy = new LeastOutstandingLoadbalanceStrategy();
+		RSocket idle = new AvailabilityRSocket(1.0);
+		RSocket busy = new AvailabilityRSocket(0.1);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(strategy.select(Arrays.asList(busy, idle))).isSameAs(idle);
+		}
+		assertThat(strategy.select(Arrays.asList(busy))).isSameAs(busy);
+	}
+
+	@Test
+	public void selectsTargetNotConnectedYet() {
+		LeastOutstandingLoadbalanceStrategy strategy = new LeastOutstandingLoadbalanceStrategy();
+		// a pooled connection reports no availability before it connects
+		RSocket unconnected = new AvailabilityRSocket(0.0);
+		RSocket connected = new AvailabilityRSocket(0.5);
+
+		for (int i = 0; i < 20; i++) {
+			assertThat(strategy.select(Arrays.asList(connected, unconnected))).isSameAs(unconnected);
+		}
+	}
+
+	@Test
+	public void connectsToEveryTarget() {
+		List<AtomicInteger> accepted = Arrays.asList(new AtomicInteger(), new AtomicInteger());
+		List<Disposable> servers = new ArrayList<>();
+		List<LoadbalanceTarget> targets = new ArrayList<>();
+		for (int i = 0; i < accepted.size(); i++) {
+			AtomicInteger connections = accepted.get(i);
+			servers.add(RSocketServer.create((setup, sendingSocket) -> {
+				connections.incrementAndGet();
+				return Mono.just(new RSocket() {
+					@Override
+					public Flux<Payload> requestStream(Payload payload) {
+						payload.release();
+						return Flux.never();
+					}
+				});
+			}).bind(LocalServerTransport.create("connectsToEveryTarget" + i)).block());
+			targets.add(LoadbalanceTarget.from("target" + i, LocalClientTransport.create("connectsToEveryTarget" + i)));
+		}
+
+		BrokerRSocketClient client = BrokerRSocketConnector.create().serviceName("localservice")
+				.toRSocketClient(Flux.just(targets), new LeastOutstandingLoadbalanceStrategy());
+		List<Disposable> streams = new ArrayList<>();
+		try {
+			// each open stream makes the connected target busier than one not yet connected
+			for (int i = 0; i < 100 && accepted.stream().anyMatch(count -> count.get() == 0); i++) {
+				streams.add(client.requestStream(Mono.fromSupplier(() -> DefaultPayload.create("stream")))
+						.subscribe());
+			}
+
+			assertThat(accepted).allSatisfy(count -> assertThat(count).hasValue(1));
+		}
+		finally {
+			streams.forEach(Disposable::dispose);
+			client.dispose();
+			servers.forEach(Disposable::dispose);
+		}
+	}
+
+	private static class AvailabilityRSocket implements RSocket {
+
+		private final double availability;
+
+		AvailabilityRSocket(double availability) {
+			this.availability = availability;
+		}
+
+		@Override
+		public double availability() {
+			return availability;
+		}
+
+	}
+
+}
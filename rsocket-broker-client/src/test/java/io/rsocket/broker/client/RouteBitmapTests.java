@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RouteBitmapTests {
+
+	@Test
+	public void withAndWithout() {
+		RouteBitmap bitmap = RouteBitmap.of(5, 1, 70000, 3);
+
+		assertThat(bitmap.toArray()).containsExactly(1, 3, 5, 70000);
+		assertThat(bitmap.with(3)).isSameAs(bitmap);
+		assertThat(bitmap.without(4)).isSameAs(bitmap);
+		assertThat(bitmap.without(70000).toArray()).containsExactly(1, 3, 5);
+		assertThat(bitmap.select(3)).isEqualTo(70000);
+		// the original is unchanged
+		assertThat(bitmap.cardinality()).isEqualTo(4);
+		assertThat(bitmap.contains(70000)).isTrue();
+	}
+
+	@Test
+	public void denseContainers() {
+		int size = RouteBitmap.ARRAY_MAX_SIZE * 3;
+		RouteBitmap evens = RouteBitmap.of(IntStream.range(0, size).map(i -> i * 2).toArray());
+		RouteBitmap all = RouteBitmap.of(IntStream.range(0, size * 2).toArray());
+
+		assertThat(evens.cardinality()).isEqualTo(size);
+		assertThat(all.and(evens)).isEqualTo(evens);
+		assertThat(evens.select(size - 1)).isEqualTo((size - 1) * 2);
+
+		RouteBitmap sparse = all;
+		for (int i = 0; i < size * 2 - 10; i++) {
+			sparse = sparse.without(i);
+		}
+		assertThat(sparse.cardinality()).isEqualTo(10);
+		assertThat(sparse.and(evens).toArray()).containsExactly(size * 2 - 10, size * 2 - 8,
+				size * 2 - 6, size * 2 - 4, size * 2 - 2);
+	}
+
+	@Test
+	public void builder() {
+		int size = RouteBitmap.ARRAY_MAX_SIZE * 2;
+		RouteBitmap sparse = RouteBitmap.of(1, 3, 70000);
+		RouteBitmap.Builder builder = sparse.toBuilder();
+		assertThat(builder.build()).isSameAs(sparse);
+
+		for (int i = 0; i < size; i++) {
+			builder.add(i);
+		}
+		// an ordinal added and removed in the same batch is absent
+		builder.add(140000).remove(140000).remove(70000);
+		RouteBitmap dense = builder.build();
+		assertThat(dense).isEqualTo(RouteBitmap.of(IntStream.range(0, size).toArray()));
+		assertThat(sparse.toArray()).containsExactly(1, 3, 70000);
+
+		RouteBitmap.Builder shrink = dense.toBuilder();
+		for (int i = 2; i < size; i++) {
+			shrink.remove(i);
+		}
+		assertThat(shrink.build()).isEqualTo(RouteBitmap.of(0, 1));
+		assertThat(dense.toBuilder().remove(0).remove(1).build().cardinality()).isEqualTo(size - 2);
+		assertThat(RouteBitmap.of(5).toBuilder().remove(5).build().isEmpty()).isTrue();
+	}
+
+}
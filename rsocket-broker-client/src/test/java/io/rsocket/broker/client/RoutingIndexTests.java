@@ -0,0 +1,165 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.client;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.frames.Address;
+import io.rsocket.broker.frames.RouteEventBatch;
+import io.rsocket.broker.frames.RouteEventBatchFlyweight;
+import io.rsocket.broker.frames.RouteJoin;
+import io.rsocket.broker.frames.RouteRemove;
+import io.rsocket.broker.frames.RoutingType;
+import org.junit.jupiter.api.Test;
+
+import static io.rsocket.broker.common.WellKnownKey.SERVICE_NAME;
+import static io.rsocket.broker.common.WellKnownKey.ZONE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoutingIndexTests {
+
+	private static final Id BROKER_ID = Id.random();
+
+	@Test
+	public void unicastAndMulticast() {
+		RoutingIndex index = new RoutingIndex();
+		RouteJoin a = join("service1", "zone-a", 1);
+		RouteJoin b = join("service1", "zone-b", 1);
+		RouteJoin c = join("service2", "zone-a", 1);
+		index.accept(a);
+		index.accept(b);
+		index.accept(c);
+
+		assertThat(index.size()).isEqualTo(3);
+		assertThat(index.multicast(address("service1"))).containsExactlyInAnyOrder(a, b);
+		assertThat(index.unicast(address("service1"))).isIn(a, b);
+		assertThat(index.multicast(Address.from(BROKER_ID).with(SERVICE_NAME, "service1")
+				.with(ZONE, "zone-a").routingType(RoutingType.MULTICAST).build())).containsExactly(a);
+		assertThat(index.resolve(address("service2"))).containsExactly(c);
+		assertThat(index.unicast(address("service3"))).isNull();
+		assertThat(index.query(Tags.empty()).cardinality()).isEqualTo(3);
+	}
+
+	@Test
+	public void removeAndRejoin() {
+		RoutingIndex index = new RoutingIndex();
+		RouteJoin a = join("service1", "zone-a", 2);
+		index.accept(a);
+
+		// an older remove does not drop a newer join
+		index.accept(new RouteRemove(BROKER_ID, a.getRouteId(), 1));
+		assertThat(index.multicast(address("service1"))).containsExactly(a);
+
+		index.accept(new RouteRemove(BROKER_ID, a.getRouteId(), 3));
+		assertThat(index.size()).isZero();
+		assertThat(index.multicast(address("service1"))).isEmpty();
+
+		RouteJoin moved = RouteJoin.builder().brokerId(BROKER_ID).routeId(a.getRouteId()).timestamp(4)
+				.serviceName("service1").with(ZONE, "zone-b").build();
+		index.accept(moved);
+		assertThat(index.multicast(Address.from(BROKER_ID).with(ZONE, "zone-a").build())).isEmpty();
+		assertThat(index.multicast(Address.from(BROKER_ID).with(ZONE, "zone-b").build())).containsExactly(moved);
+	}
+
+	@Test
+	public void reusedOrdinalIsCheckedAgainstTags() {
+		RoutingIndex index = new RoutingIndex();
+		RouteJoin a = join("service1", "zone-a", 1);
+		index.accept(a);
+		RouteBitmap stale = index.query(address("service1").getTags());
+
+		index.accept(new RouteRemove(BROKER_ID, a.getRouteId(), 2));
+		RouteJoin b = join("service2", "zone-a", 2);
+		index.accept(b);
+
+		// the ordinal of the removed route now belongs to a route of another service
+		assertThat(index.route(stale.select(0))).isEqualTo(b);
+		assertThat(index.unicast(address("service1"))).isNull();
+		assertThat(index.multicast(address("service1"))).isEmpty();
+		assertThat(index.shard(address("service1"), 42)).isNull();
+	}
+
+	@Test
+	public void encodedBatch() {
+		RoutingIndex index = new RoutingIndex();
+		RouteJoin a = join("service1", "zone-a", 1);
+		RouteJoin b = join("service1", "zone-b", 1);
+		RouteEventBatch batch = RouteEventBatch.builder().brokerId(BROKER_ID).timestamp(1)
+				.join(a).join(b).build();
+		ByteBuf byteBuf = RouteEventBatchFlyweight.encode(ByteBufAllocator.DEFAULT, BROKER_ID, 1,
+				batch.getEvents(), 0);
+		index.accept(byteBuf);
+		byteBuf.release();
+
+		assertThat(index.multicast(address("service1")).stream().map(RouteJoin::getRouteId)
+				.collect(Collectors.toList())).containsExactlyInAnyOrder(a.getRouteId(), b.getRouteId());
+	}
+
+	@Test
+	public void batchAppliesAllEvents() {
+		RoutingIndex index = new RoutingIndex();
+		RouteJoin a = join("service1", "zone-a", 1);
+		RouteJoin b = join("service1", "zone-b", 1);
+		RouteJoin c = join("service2", "zone-a", 1);
+		index.accept(c);
+		index.accept(RouteEventBatch.builder().brokerId(BROKER_ID).timestamp(2)
+				.join(a).join(b).remove(new RouteRemove(BROKER_ID, a.getRouteId(), 2))
+				.remove(new RouteRemove(BROKER_ID, c.getRouteId(), 2)).build());
+
+		assertThat(index.size()).isEqualTo(1);
+		assertThat(index.multicast(address("service1"))).containsExactly(b);
+		assertThat(index.multicast(address("service2"))).isEmpty();
+		assertThat(index.multicast(Address.from(BROKER_ID).with(ZONE, "zone-a").build())).isEmpty();
+		assertThat(index.query(address("service2").getTags()).isEmpty()).isTrue();
+
+		// updates after the batch apply directly again
+		index.accept(a);
+		assertThat(index.multicast(address("service1"))).containsExactlyInAnyOrder(a, b);
+	}
+
+	@Test
+	public void shardIsStable() {
+		RoutingIndex index = new RoutingIndex();
+		for (int i = 0; i < 10; i++) {
+			index.accept(join("service1", "zone-a", 1));
+		}
+		Address address = address("service1");
+		RouteJoin shard = index.shard(address, 42);
+		assertThat(index.shard(address, 42)).isSameAs(shard);
+
+		// removing another route does not move the shard
+		List<RouteJoin> routes = index.multicast(address);
+		RouteJoin other = routes.get(0) == shard ? routes.get(1) : routes.get(0);
+		index.accept(new RouteRemove(BROKER_ID, other.getRouteId(), 2));
+		assertThat(index.shard(address, 42)).isSameAs(shard);
+	}
+
+	private static RouteJoin join(String serviceName, String zone, long timestamp) {
+		return RouteJoin.builder().brokerId(BROKER_ID).routeId(Id.random()).timestamp(timestamp)
+				.serviceName(serviceName).with(ZONE, zone).build();
+	}
+
+	private static Address address(String serviceName) {
+		return Address.from(BROKER_ID).with(SERVICE_NAME, serviceName).build();
+	}
+
+}
@@ -21,9 +21,10 @@ import java.util.Map;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.rsocket.broker.frames.Address;
+import io.rsocket.broker.frames.BrokerFrameHandler;
 import io.rsocket.broker.frames.BrokerInfo;
-import io.rsocket.broker.frames.FrameHeaderFlyweight;
 import io.rsocket.broker.frames.FrameType;
+import io.rsocket.broker.frames.RouteEventBatch;
 import io.rsocket.broker.frames.RouteJoin;
 import io.rsocket.broker.frames.RouteRemove;
 import io.rsocket.broker.frames.RouteSetup;
@@ -43,6 +44,38 @@ import org.springframework.util.MimeType;
 
 public class BrokerFrameDecoder extends AbstractDecoder<BrokerFrame> {
 
+	private static final BrokerFrameHandler<BrokerFrame> FRAME_FACTORY = new BrokerFrameHandler<>() {
+		@Override
+		public BrokerFrame onRouteSetup(ByteBuf byteBuf, int flags) {
+			return RouteSetup.from(byteBuf);
+		}
+
+		@Override
+		public BrokerFrame onRouteJoin(ByteBuf byteBuf, int flags) {
+			return RouteJoin.from(byteBuf);
+		}
+
+		@Override
+		public BrokerFrame onRouteRemove(ByteBuf byteBuf, int flags) {
+			return RouteRemove.from(byteBuf);
+		}
+
+		@Override
+		public BrokerFrame onBrokerInfo(ByteBuf byteBuf, int flags) {
+			return BrokerInfo.from(byteBuf);
+		}
+
+		@Override
+		public BrokerFrame onAddress(ByteBuf byteBuf, int flags) {
+			return Address.from(byteBuf, flags);
+		}
+
+		@Override
+		public BrokerFrame onRouteEventBatch(ByteBuf byteBuf, int flags) {
+			return RouteEventBatch.from(byteBuf);
+		}
+	};
+
 	public BrokerFrameDecoder() {
 		super(MimeTypes.BROKER_FRAME_MIME_TYPE);
 	}
@@ -68,21 +101,7 @@ public class BrokerFrameDecoder extends AbstractDecoder<BrokerFrame> {
 				return new BrokerFrame(FrameType.RESERVED, 0) {
 				};
 			}
-			int flags = FrameHeaderFlyweight.flags(byteBuf);
-			FrameType frameType = FrameHeaderFlyweight.frameType(byteBuf);
-			switch (frameType) {
-			case ADDRESS:
-				return Address.from(byteBuf, flags);
-			case BROKER_INFO:
-				return BrokerInfo.from(byteBuf);
-			case ROUTE_JOIN:
-				return RouteJoin.from(byteBuf);
-			case ROUTE_REMOVE:
-				return RouteRemove.from(byteBuf);
-			case ROUTE_SETUP:
-				return RouteSetup.from(byteBuf);
-			}
-			throw new IllegalArgumentException("Unknown FrameType " + frameType);
+			return BrokerFrameHandler.dispatch(byteBuf, FRAME_FACTORY);
 		}
 		finally {
 			DataBufferUtils.release(buffer);
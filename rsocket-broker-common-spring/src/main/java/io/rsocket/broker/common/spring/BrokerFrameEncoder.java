@@ -24,6 +24,8 @@ import io.rsocket.broker.frames.Address;
 import io.rsocket.broker.frames.AddressFlyweight;
 import io.rsocket.broker.frames.BrokerInfo;
 import io.rsocket.broker.frames.BrokerInfoFlyweight;
+import io.rsocket.broker.frames.RouteEventBatch;
+import io.rsocket.broker.frames.RouteEventBatchFlyweight;
 import io.rsocket.broker.frames.RouteJoin;
 import io.rsocket.broker.frames.RouteJoinFlyweight;
 import io.rsocket.broker.frames.RouteRemove;
@@ -86,7 +88,12 @@ public class BrokerFrameEncoder extends AbstractEncoder<BrokerFrame> {
 			RouteSetup routeSetup = (RouteSetup) brokerFrame;
 			encoded = RouteSetupFlyweight.encode(allocator,
 					routeSetup.getRouteId(), routeSetup.getServiceName(), routeSetup.getTags(), brokerFrame
-							.getFlags());
+							.getFlags(), routeSetup.getTagDictionaryCapacity());
+			break;
+		case ROUTE_EVENT_BATCH:
+			RouteEventBatch batch = (RouteEventBatch) brokerFrame;
+			encoded = RouteEventBatchFlyweight.encode(allocator, batch.getBrokerId(),
+					batch.getTimestamp(), batch.getEvents(), brokerFrame.getFlags());
 			break;
 		default:
 			throw new IllegalArgumentException("Unknown FrameType " + brokerFrame.getFrameType());
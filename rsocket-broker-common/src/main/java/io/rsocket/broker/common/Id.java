@@ -22,10 +22,12 @@ import java.util.UUID;
 public class Id {
 	private final long first;
 	private final long second;
+	private final int hash;
 
 	public Id(long first, long second) {
 		this.first = first;
 		this.second = second;
+		this.hash = hash(first, second);
 	}
 
 	public long getFirst() {
@@ -52,7 +54,22 @@ public class Id {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.first, this.second);
+		return this.hash;
+	}
+
+	/**
+	 * Mixes both halves of an id into a hash with well distributed low bits, the same
+	 * as {@link #hashCode()} of an {@link Id} with these halves.
+	 */
+	public static int hash(long first, long second) {
+		// murmur3 finalizer
+		long h = first * 0x9E3779B97F4A7C15L ^ second;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
 	}
 
 	public static Id from(long[] parts) {
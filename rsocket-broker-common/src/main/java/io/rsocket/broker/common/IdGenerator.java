@@ -0,0 +1,54 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.UUID;
+
+/**
+ * Strategy to create {@link Id Ids}, for example route ids.
+ */
+@FunctionalInterface
+public interface IdGenerator {
+
+	Id generate();
+
+	/**
+	 * @return a generator of random version 4 ids backed by {@link UUID#randomUUID()},
+	 * the same as {@link Id#random()}.
+	 */
+	static IdGenerator secure() {
+		return Id::random;
+	}
+
+	/**
+	 * @return a generator of random version 4 ids backed by
+	 * {@link java.util.concurrent.ThreadLocalRandom}. It does not contend between
+	 * threads but its ids are not suitable where they must not be guessable.
+	 */
+	static IdGenerator threadLocalRandom() {
+		return RandomIdGenerator.INSTANCE;
+	}
+
+	/**
+	 * @return a generator of version 7 ids that sort by creation time, see
+	 * {@link TimeOrderedIdGenerator}.
+	 */
+	static IdGenerator timeOrdered() {
+		return TimeOrderedIdGenerator.INSTANCE;
+	}
+
+}
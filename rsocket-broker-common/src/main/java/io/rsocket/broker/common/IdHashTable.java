@@ -0,0 +1,188 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table of {@link Id} keys stored as two parallel {@code long[]}
+ * arrays, probed linearly and compacted with backward shift deletion, so neither
+ * lookups nor removals allocate. Subclasses keep values in a parallel array.
+ */
+abstract class IdHashTable {
+
+	static final int DEFAULT_EXPECTED_SIZE = 16;
+
+	private static final float LOAD_FACTOR = 0.65f;
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private long[] firsts;
+
+	private long[] seconds;
+
+	private boolean[] used;
+
+	private int mask;
+
+	private int resizeThreshold;
+
+	private int size;
+
+	IdHashTable(int expectedSize) {
+		if (expectedSize < 0) {
+			throw new IllegalArgumentException("expectedSize must be >= 0");
+		}
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(used, false);
+			clearValues();
+			size = 0;
+		}
+	}
+
+	/**
+	 * @return the slot of the given key, or {@code -(insertion slot) - 1} when absent.
+	 */
+	final int index(long first, long second) {
+		int slot = Id.hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	/**
+	 * Stores an absent key, growing the table when needed.
+	 * @param index the negative result of {@link #index(long, long)} for the key.
+	 * @return the slot the key was stored at.
+	 */
+	final int insert(long first, long second, int index) {
+		int slot = -index - 1;
+		if (size >= resizeThreshold) {
+			resize();
+			slot = -index(first, second) - 1;
+		}
+		firsts[slot] = first;
+		seconds[slot] = second;
+		used[slot] = true;
+		size++;
+		return slot;
+	}
+
+	final void removeSlot(int slot) {
+		int hole = slot;
+		int next = (slot + 1) & mask;
+		while (used[next]) {
+			int ideal = Id.hash(firsts[next], seconds[next]) & mask;
+			// move back when the hole lies between the ideal slot and the current one
+			if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+				firsts[hole] = firsts[next];
+				seconds[hole] = seconds[next];
+				moveValue(next, hole);
+				hole = next;
+			}
+			next = (next + 1) & mask;
+		}
+		used[hole] = false;
+		clearValue(hole);
+		size--;
+	}
+
+	final long first(int slot) {
+		return firsts[slot];
+	}
+
+	final long second(int slot) {
+		return seconds[slot];
+	}
+
+	final boolean used(int slot) {
+		return used[slot];
+	}
+
+	final int capacity() {
+		return used.length;
+	}
+
+	/** Replaces the values with an array of the given capacity, returning the old one. */
+	abstract Object resizeValues(int capacity);
+
+	/** Copies a value from the array returned by {@link #resizeValues(int)}. */
+	abstract void copyValue(Object oldValues, int oldSlot, int slot);
+
+	abstract void moveValue(int fromSlot, int toSlot);
+
+	abstract void clearValue(int slot);
+
+	abstract void clearValues();
+
+	private void resize() {
+		int capacity = used.length << 1;
+		if (capacity > MAX_CAPACITY || capacity < 0) {
+			throw new IllegalStateException("max capacity reached at size " + size);
+		}
+		long[] oldFirsts = firsts;
+		long[] oldSeconds = seconds;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		Object oldValues = resizeValues(capacity);
+		for (int i = 0; i < oldUsed.length; i++) {
+			if (oldUsed[i]) {
+				int slot = -index(oldFirsts[i], oldSeconds[i]) - 1;
+				firsts[slot] = oldFirsts[i];
+				seconds[slot] = oldSeconds[i];
+				used[slot] = true;
+				copyValue(oldValues, i, slot);
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.firsts = new long[capacity];
+		this.seconds = new long[capacity];
+		this.used = new boolean[capacity];
+		this.mask = capacity - 1;
+		this.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	static int capacityFor(int expectedSize) {
+		int capacity = 2;
+		while (capacity * LOAD_FACTOR <= expectedSize) {
+			capacity <<= 1;
+			if (capacity > MAX_CAPACITY || capacity < 0) {
+				throw new IllegalArgumentException("expectedSize too large " + expectedSize);
+			}
+		}
+		return capacity;
+	}
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A map of {@link Id} keys to non null values that stores keys inline, so lookups do
+ * not allocate and can be made from the two halves of an id without creating it.
+ * Not thread safe.
+ *
+ * @param <V> the type of values.
+ */
+public final class IdMap<V> extends IdHashTable {
+
+	private Object[] values;
+
+	public IdMap() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public IdMap(int expectedSize) {
+		super(expectedSize);
+		this.values = new Object[capacity()];
+	}
+
+	public V get(Id id) {
+		return get(id.getFirst(), id.getSecond());
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long first, long second) {
+		int slot = index(first, second);
+		return slot < 0 ? null : (V) values[slot];
+	}
+
+	public boolean containsKey(Id id) {
+		return containsKey(id.getFirst(), id.getSecond());
+	}
+
+	public boolean containsKey(long first, long second) {
+		return index(first, second) >= 0;
+	}
+
+	/**
+	 * @return the previous value or null.
+	 */
+	public V put(Id id, V value) {
+		return put(id.getFirst(), id.getSecond(), value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(long first, long second, V value) {
+		Objects.requireNonNull(value, "value may not be null");
+		int slot = index(first, second);
+		if (slot >= 0) {
+			V previous = (V) values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		// insert may grow the values array
+		slot = insert(first, second, slot);
+		values[slot] = value;
+		return null;
+	}
+
+	/**
+	 * @return the removed value or null.
+	 */
+	public V remove(Id id) {
+		return remove(id.getFirst(), id.getSecond());
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(long first, long second) {
+		int slot = index(first, second);
+		if (slot < 0) {
+			return null;
+		}
+		V previous = (V) values[slot];
+		removeSlot(slot);
+		return previous;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer) {
+		for (int slot = 0; slot < capacity(); slot++) {
+			if (used(slot)) {
+				consumer.accept(first(slot), second(slot), (V) values[slot]);
+			}
+		}
+	}
+
+	@Override
+	Object resizeValues(int capacity) {
+		Object[] oldValues = this.values;
+		this.values = new Object[capacity];
+		return oldValues;
+	}
+
+	@Override
+	void copyValue(Object oldValues, int oldSlot, int slot) {
+		this.values[slot] = ((Object[]) oldValues)[oldSlot];
+	}
+
+	@Override
+	void moveValue(int fromSlot, int toSlot) {
+		values[toSlot] = values[fromSlot];
+	}
+
+	@Override
+	void clearValue(int slot) {
+		values[slot] = null;
+	}
+
+	@Override
+	void clearValues() {
+		Arrays.fill(values, null);
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer<V> {
+
+		void accept(long first, long second, V value);
+
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+/**
+ * A set of {@link Id Ids} stored inline, see {@link IdMap}. Not thread safe.
+ */
+public final class IdSet extends IdHashTable {
+
+	public IdSet() {
+		this(DEFAULT_EXPECTED_SIZE);
+	}
+
+	public IdSet(int expectedSize) {
+		super(expectedSize);
+	}
+
+	public boolean contains(Id id) {
+		return contains(id.getFirst(), id.getSecond());
+	}
+
+	public boolean contains(long first, long second) {
+		return index(first, second) >= 0;
+	}
+
+	/**
+	 * @return true if the id was not already present.
+	 */
+	public boolean add(Id id) {
+		return add(id.getFirst(), id.getSecond());
+	}
+
+	public boolean add(long first, long second) {
+		int slot = index(first, second);
+		if (slot >= 0) {
+			return false;
+		}
+		insert(first, second, slot);
+		return true;
+	}
+
+	/**
+	 * @return true if the id was present.
+	 */
+	public boolean remove(Id id) {
+		return remove(id.getFirst(), id.getSecond());
+	}
+
+	public boolean remove(long first, long second) {
+		int slot = index(first, second);
+		if (slot < 0) {
+			return false;
+		}
+		removeSlot(slot);
+		return true;
+	}
+
+	public void forEach(IdConsumer consumer) {
+		for (int slot = 0; slot < capacity(); slot++) {
+			if (used(slot)) {
+				consumer.accept(first(slot), second(slot));
+			}
+		}
+	}
+
+	@Override
+	Object resizeValues(int capacity) {
+		return null;
+	}
+
+	@Override
+	void copyValue(Object oldValues, int oldSlot, int slot) {
+	}
+
+	@Override
+	void moveValue(int fromSlot, int toSlot) {
+	}
+
+	@Override
+	void clearValue(int slot) {
+	}
+
+	@Override
+	void clearValues() {
+	}
+
+	@FunctionalInterface
+	public interface IdConsumer {
+
+		void accept(long first, long second);
+
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+/**
+ * A map of {@link Id} keys to primitive long values, see {@link IdMap}. Absent keys
+ * read as the missing value given at construction. Not thread safe.
+ */
+public final class IdToLongMap extends IdHashTable {
+
+	private final long missingValue;
+
+	private long[] values;
+
+	public IdToLongMap() {
+		this(DEFAULT_EXPECTED_SIZE, 0L);
+	}
+
+	public IdToLongMap(int expectedSize, long missingValue) {
+		super(expectedSize);
+		this.missingValue = missingValue;
+		this.values = new long[capacity()];
+	}
+
+	public long missingValue() {
+		return this.missingValue;
+	}
+
+	public long get(Id id) {
+		return get(id.getFirst(), id.getSecond());
+	}
+
+	public long get(long first, long second) {
+		int slot = index(first, second);
+		return slot < 0 ? missingValue : values[slot];
+	}
+
+	public boolean containsKey(Id id) {
+		return containsKey(id.getFirst(), id.getSecond());
+	}
+
+	public boolean containsKey(long first, long second) {
+		return index(first, second) >= 0;
+	}
+
+	/**
+	 * @return the previous value or the missing value.
+	 */
+	public long put(Id id, long value) {
+		return put(id.getFirst(), id.getSecond(), value);
+	}
+
+	public long put(long first, long second, long value) {
+		int slot = index(first, second);
+		if (slot >= 0) {
+			long previous = values[slot];
+			values[slot] = value;
+			return previous;
+		}
+		// insert may grow the values array
+		slot = insert(first, second, slot);
+		values[slot] = value;
+		return missingValue;
+	}
+
+	/**
+	 * Adds to the value of a key, starting from 0 when absent.
+	 * @return the new value.
+	 */
+	public long addTo(Id id, long delta) {
+		return addTo(id.getFirst(), id.getSecond(), delta);
+	}
+
+	public long addTo(long first, long second, long delta) {
+		int slot = index(first, second);
+		if (slot >= 0) {
+			return values[slot] += delta;
+		}
+		slot = insert(first, second, slot);
+		values[slot] = delta;
+		return delta;
+	}
+
+	/**
+	 * @return the removed value or the missing value.
+	 */
+	public long remove(Id id) {
+		return remove(id.getFirst(), id.getSecond());
+	}
+
+	public long remove(long first, long second) {
+		int slot = index(first, second);
+		if (slot < 0) {
+			return missingValue;
+		}
+		long previous = values[slot];
+		removeSlot(slot);
+		return previous;
+	}
+
+	public void forEach(EntryConsumer consumer) {
+		for (int slot = 0; slot < capacity(); slot++) {
+			if (used(slot)) {
+				consumer.accept(first(slot), second(slot), values[slot]);
+			}
+		}
+	}
+
+	@Override
+	Object resizeValues(int capacity) {
+		long[] oldValues = this.values;
+		this.values = new long[capacity];
+		return oldValues;
+	}
+
+	@Override
+	void copyValue(Object oldValues, int oldSlot, int slot) {
+		this.values[slot] = ((long[]) oldValues)[oldSlot];
+	}
+
+	@Override
+	void moveValue(int fromSlot, int toSlot) {
+		values[toSlot] = values[fromSlot];
+	}
+
+	@Override
+	void clearValue(int slot) {
+		values[slot] = 0L;
+	}
+
+	@Override
+	void clearValues() {
+	}
+
+	@FunctionalInterface
+	public interface EntryConsumer {
+
+		void accept(long first, long second, long value);
+
+	}
+
+}
@@ -25,6 +25,8 @@ public class ImmutableKey implements Key {
 
 	private final String key;
 
+	private final int hash;
+
 	public ImmutableKey(WellKnownKey wellKnownKey) {
 		this(wellKnownKey, null);
 	}
@@ -36,6 +38,7 @@ public class ImmutableKey implements Key {
 	private ImmutableKey(WellKnownKey wellKnownKey, String key) {
 		this.wellKnownKey = wellKnownKey;
 		this.key = key;
+		this.hash = 31 * Objects.hashCode(wellKnownKey) + Objects.hashCode(key);
 	}
 
 	public WellKnownKey getWellKnownKey() {
@@ -61,7 +64,7 @@ public class ImmutableKey implements Key {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.wellKnownKey, this.key);
+		return this.hash;
 	}
 
 	@Override
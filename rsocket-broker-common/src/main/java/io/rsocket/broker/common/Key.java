@@ -21,8 +21,11 @@ public interface Key {
 
 	String getKey();
 
+	/**
+	 * @return the canonical instance for a custom key, see {@link KeyRegistry}.
+	 */
 	static Key of(String key) {
-		return new ImmutableKey(key);
+		return KeyRegistry.getDefault().of(key);
 	}
 
 	static Key of(WellKnownKey key) {
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical {@link Key} instances for custom keys, so that equal keys created while
+ * decoding frames or binding configuration are the same instance. The registry holds
+ * at most {@code maxSize} keys, once full a new key evicts one that was not looked up
+ * recently with the CLOCK algorithm. A key looked up again after its eviction is a new,
+ * still equal, instance, so many distinct keys from a peer can only churn the registry
+ * and never fill it for good.
+ *
+ * Lookups of registered keys are lock free, registering a key is synchronized.
+ */
+public final class KeyRegistry {
+
+	/** System property to change the size of the default registry. */
+	public static final String MAX_SIZE_PROPERTY = "io.rsocket.broker.keyRegistry.maxSize";
+
+	public static final int DEFAULT_MAX_SIZE = 16384;
+
+	private static final KeyRegistry DEFAULT = new KeyRegistry(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+
+	private final ConcurrentHashMap<String, Entry> keys = new ConcurrentHashMap<>();
+
+	// registered keys in insertion slots, guarded by this
+	private final List<String> clock = new ArrayList<>();
+
+	// guarded by this
+	private int hand;
+
+	private final int maxSize;
+
+	public KeyRegistry(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize must be >= 0");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the registry used by {@link Key#of(String)}.
+	 */
+	public static KeyRegistry getDefault() {
+		return DEFAULT;
+	}
+
+	public Key of(String key) {
+		Objects.requireNonNull(key, "key may not be null");
+		Entry existing = keys.get(key);
+		if (existing != null) {
+			// read before writing so hits on hot keys do not dirty the shared cache line
+			if (!existing.referenced) {
+				existing.referenced = true;
+			}
+			return existing.key;
+		}
+		if (maxSize == 0) {
+			return new ImmutableKey(key);
+		}
+		return register(key);
+	}
+
+	private synchronized Key register(String name) {
+		Entry existing = keys.get(name);
+		if (existing != null) {
+			if (!existing.referenced) {
+				existing.referenced = true;
+			}
+			return existing.key;
+		}
+		Entry entry = new Entry(new ImmutableKey(name));
+		if (clock.size() < maxSize) {
+			clock.add(name);
+		}
+		else {
+			int slot = victim();
+			keys.remove(clock.get(slot));
+			clock.set(slot, name);
+		}
+		keys.put(name, entry);
+		return entry.key;
+	}
+
+	// CLOCK: skip and clear recently referenced keys, evict the first that is not.
+	private int victim() {
+		while (true) {
+			int slot = hand;
+			hand = (hand + 1) % clock.size();
+			Entry entry = keys.get(clock.get(slot));
+			if (!entry.referenced) {
+				return slot;
+			}
+			entry.referenced = false;
+		}
+	}
+
+	/**
+	 * @return the canonical immutable instance equal to the given key, for example of a
+	 * bound {@link MutableKey}.
+	 */
+	public Key of(Key key) {
+		if (key.getWellKnownKey() != null) {
+			return key.getWellKnownKey().getKey();
+		}
+		return of(key.getKey());
+	}
+
+	public int size() {
+		return keys.size();
+	}
+
+	public int maxSize() {
+		return this.maxSize;
+	}
+
+	private static final class Entry {
+
+		private final Key key;
+
+		// racy by design, a lost update only changes which key is evicted
+		private volatile boolean referenced;
+
+		private Entry(Key key) {
+			this.key = key;
+		}
+
+	}
+
+}
@@ -26,15 +26,12 @@ public class MutableKey implements Key {
 	private String key;
 
 	public MutableKey() {
-		System.out.println("here");
 	}
 
 	public MutableKey(String text) {
 		if (text != null && !text.isEmpty()) {
-			try {
-				wellKnownKey = WellKnownKey.valueOf(text.toUpperCase());
-			}
-			catch (IllegalArgumentException e) {
+			wellKnownKey = WellKnownKey.fromName(text);
+			if (wellKnownKey == null) {
 				// NOT a valid well know key
 				key = text;
 			}
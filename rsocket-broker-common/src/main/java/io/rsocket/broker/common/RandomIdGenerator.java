@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random version 4 ids from {@link ThreadLocalRandom}.
+ */
+final class RandomIdGenerator implements IdGenerator {
+
+	static final RandomIdGenerator INSTANCE = new RandomIdGenerator();
+
+	static final long VERSION_MASK = 0xFFFFFFFF_FFFF0FFFL;
+
+	static final long VARIANT_MASK = 0x3FFFFFFF_FFFFFFFFL;
+
+	static final long VARIANT = 0x80000000_00000000L;
+
+	private RandomIdGenerator() {
+	}
+
+	@Override
+	public Id generate() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long first = (random.nextLong() & VERSION_MASK) | 0x4000L;
+		long second = (random.nextLong() & VARIANT_MASK) | VARIANT;
+		return new Id(first, second);
+	}
+
+}
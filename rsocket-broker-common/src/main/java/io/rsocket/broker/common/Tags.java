@@ -16,68 +16,272 @@
 
 package io.rsocket.broker.common;
 
-import java.util.Collections;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 
+/**
+ * Immutable set of tags. Values of well known keys are held in an array indexed through
+ * a bitmask of the keys present, custom keys and their values in parallel arrays sorted
+ * by key, and the hash is computed once. Tags iterate in canonical order: well known
+ * keys by id, then custom keys in UTF-8 byte order.
+ */
 public class Tags {
 
+	private static final WellKnownKey[] WELL_KNOWN_KEYS = WellKnownKey.values();
+
+	private static final String[] NO_VALUES = new String[0];
+
+	private static final Key[] NO_KEYS = new Key[0];
+
 	private static final Tags EMPTY = builder().buildTags();
 
-	private final Map<Key, String> tags;
+	static {
+		if (WELL_KNOWN_KEYS.length > Long.SIZE) {
+			throw new IllegalStateException("WellKnownKey ordinals do not fit the well known key mask");
+		}
+	}
+
+	// bit per WellKnownKey ordinal
+	private final long wellKnownMask;
+
+	// by ordinal, one per bit of wellKnownMask
+	private final String[] wellKnownValues;
+
+	private final Key[] customKeys;
+
+	private final String[] customValues;
+
+	private final int hash;
 
 	public Tags(Map<Key, String> tags) {
 		Objects.requireNonNull(tags, "tags may not be null");
-		this.tags = tags;
+
+		String[] valuesByOrdinal = null;
+		long mask = 0;
+		TreeMap<String, String> custom = null;
+		for (Entry<Key, String> entry : tags.entrySet()) {
+			Key key = entry.getKey();
+			WellKnownKey wellKnownKey = key.getWellKnownKey();
+			if (wellKnownKey != null) {
+				if (valuesByOrdinal == null) {
+					valuesByOrdinal = new String[WELL_KNOWN_KEYS.length];
+				}
+				valuesByOrdinal[wellKnownKey.ordinal()] = entry.getValue();
+				mask |= 1L << wellKnownKey.ordinal();
+			}
+			else if (key.getKey() != null) {
+				if (custom == null) {
+					custom = new TreeMap<>(Tags::compareUtf8);
+				}
+				custom.put(key.getKey(), entry.getValue());
+			}
+		}
+
+		this.wellKnownMask = mask;
+		if (mask == 0) {
+			this.wellKnownValues = NO_VALUES;
+		}
+		else {
+			this.wellKnownValues = new String[Long.bitCount(mask)];
+			int i = 0;
+			for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+				this.wellKnownValues[i++] = valuesByOrdinal[Long.numberOfTrailingZeros(remaining)];
+			}
+		}
+
+		if (custom == null) {
+			this.customKeys = NO_KEYS;
+			this.customValues = NO_VALUES;
+		}
+		else {
+			this.customKeys = new Key[custom.size()];
+			this.customValues = new String[custom.size()];
+			int i = 0;
+			for (Entry<String, String> entry : custom.entrySet()) {
+				this.customKeys[i] = Key.of(entry.getKey());
+				this.customValues[i++] = entry.getValue();
+			}
+		}
+
+		int h = Long.hashCode(mask);
+		for (String value : this.wellKnownValues) {
+			h = 31 * h + Objects.hashCode(value);
+		}
+		for (int i = 0; i < this.customKeys.length; i++) {
+			h = 31 * h + this.customKeys[i].getKey().hashCode();
+			h = 31 * h + Objects.hashCode(this.customValues[i]);
+		}
+		this.hash = h;
 	}
 
+	/**
+	 * @return a read-only map view of these tags in canonical order.
+	 */
 	public Map<Key, String> asMap() {
-		return this.tags;
+		return new MapView();
+	}
+
+	/**
+	 * @return a mask with bit {@link WellKnownKey#ordinal()} set for each well known key
+	 * present.
+	 */
+	public long wellKnownMask() {
+		return this.wellKnownMask;
 	}
 
 	public String get(WellKnownKey key) {
-		return tags.get(Key.of(key));
+		long bit = 1L << key.ordinal();
+		if ((wellKnownMask & bit) == 0) {
+			return null;
+		}
+		return wellKnownValues[Long.bitCount(wellKnownMask & (bit - 1))];
 	}
 
 	public String get(String key) {
-		return tags.get(Key.of(key));
+		int index = customIndex(key);
+		return index < 0 ? null : customValues[index];
+	}
+
+	public String get(Key key) {
+		if (key.getWellKnownKey() != null) {
+			return get(key.getWellKnownKey());
+		}
+		return key.getKey() == null ? null : get(key.getKey());
 	}
 
 	public boolean containsKey(WellKnownKey key) {
-		return tags.containsKey(Key.of(key));
+		return (wellKnownMask & (1L << key.ordinal())) != 0;
 	}
 
 	public boolean containsKey(String key) {
-		return tags.containsKey(Key.of(key));
+		return customIndex(key) >= 0;
+	}
+
+	public boolean containsKey(Key key) {
+		if (key.getWellKnownKey() != null) {
+			return containsKey(key.getWellKnownKey());
+		}
+		return key.getKey() != null && containsKey(key.getKey());
+	}
+
+	/**
+	 * @return the key at the given position in canonical order, with
+	 * {@link #valueAt(int)} and {@link #size()} tags iterate without creating objects.
+	 */
+	public Key keyAt(int index) {
+		Objects.checkIndex(index, size());
+		if (index >= wellKnownValues.length) {
+			return customKeys[index - wellKnownValues.length];
+		}
+		long remaining = wellKnownMask;
+		for (int i = 0; i < index; i++) {
+			remaining &= remaining - 1;
+		}
+		return Key.of(WELL_KNOWN_KEYS[Long.numberOfTrailingZeros(remaining)]);
+	}
+
+	/**
+	 * @return the value at the given position in canonical order.
+	 */
+	public String valueAt(int index) {
+		Objects.checkIndex(index, size());
+		if (index >= wellKnownValues.length) {
+			return customValues[index - wellKnownValues.length];
+		}
+		return wellKnownValues[index];
 	}
 
 	public Set<Entry<Key, String>> entries() {
-		return this.tags.entrySet();
+		return asMap().entrySet();
+	}
+
+	public int size() {
+		return wellKnownValues.length + customKeys.length;
 	}
 
 	public boolean isEmpty() {
-		return this.tags.isEmpty();
+		return size() == 0;
 	}
 
 	@Override
 	public String toString() {
-		return Tags.class.getSimpleName() + tags.toString();
+		return Tags.class.getSimpleName() + asMap().toString();
 	}
 
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
 		if (o == null || getClass() != o.getClass()) return false;
-		Tags tags1 = (Tags) o;
-		return this.tags.equals(tags1.tags);
+		Tags other = (Tags) o;
+		if (this.hash != other.hash || this.wellKnownMask != other.wellKnownMask
+				|| this.customKeys.length != other.customKeys.length) {
+			return false;
+		}
+		for (int i = 0; i < this.customKeys.length; i++) {
+			if (!this.customKeys[i].getKey().equals(other.customKeys[i].getKey())) {
+				return false;
+			}
+		}
+		return Arrays.equals(this.wellKnownValues, other.wellKnownValues)
+				&& Arrays.equals(this.customValues, other.customValues);
 	}
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(this.tags);
+		return this.hash;
+	}
+
+	private int customIndex(String key) {
+		int low = 0;
+		int high = customKeys.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareUtf8(customKeys[mid].getKey(), key);
+			if (cmp < 0) {
+				low = mid + 1;
+			}
+			else if (cmp > 0) {
+				high = mid - 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compares code points, which orders the same as the unsigned UTF-8 bytes.
+	 */
+	static int compareUtf8(String s1, String s2) {
+		int i1 = 0;
+		int i2 = 0;
+		while (i1 < s1.length() && i2 < s2.length()) {
+			char c1 = s1.charAt(i1);
+			char c2 = s2.charAt(i2);
+			if (c1 == c2) {
+				i1++;
+				i2++;
+				continue;
+			}
+			int cp1 = s1.codePointAt(i1);
+			int cp2 = s2.codePointAt(i2);
+			if (cp1 != cp2) {
+				return Integer.compare(cp1, cp2);
+			}
+			i1 += Character.charCount(cp1);
+			i2 += Character.charCount(cp2);
+		}
+		return Integer.compare(s1.length() - i1, s2.length() - i2);
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -89,6 +293,68 @@ public class Tags {
 		return EMPTY;
 	}
 
+	private final class MapView extends AbstractMap<Key, String> {
+
+		@Override
+		public int size() {
+			return Tags.this.size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return key instanceof Key && Tags.this.containsKey((Key) key);
+		}
+
+		@Override
+		public String get(Object key) {
+			return key instanceof Key ? Tags.this.get((Key) key) : null;
+		}
+
+		@Override
+		public Set<Entry<Key, String>> entrySet() {
+			return new AbstractSet<>() {
+				@Override
+				public int size() {
+					return Tags.this.size();
+				}
+
+				@Override
+				public Iterator<Entry<Key, String>> iterator() {
+					return new EntryIterator();
+				}
+			};
+		}
+
+	}
+
+	private final class EntryIterator implements Iterator<Entry<Key, String>> {
+
+		private long remainingWellKnown = wellKnownMask;
+
+		private int index;
+
+		@Override
+		public boolean hasNext() {
+			return index < size();
+		}
+
+		@Override
+		public Entry<Key, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			int i = index++;
+			if (remainingWellKnown != 0) {
+				int ordinal = Long.numberOfTrailingZeros(remainingWellKnown);
+				remainingWellKnown &= remainingWellKnown - 1;
+				return new SimpleImmutableEntry<>(Key.of(WELL_KNOWN_KEYS[ordinal]), wellKnownValues[i]);
+			}
+			int customIndex = i - wellKnownValues.length;
+			return new SimpleImmutableEntry<>(customKeys[customIndex], customValues[customIndex]);
+		}
+
+	}
+
 	public static class Builder<SELF extends Builder<SELF>> {
 
 		private final Map<Key, String> tags = new LinkedHashMap<>();
@@ -123,7 +389,9 @@ public class Tags {
 
 		@SuppressWarnings("unchecked")
 		public SELF with(Tags tags) {
-			this.tags.putAll(tags.asMap());
+			for (int i = 0; i < tags.size(); i++) {
+				this.tags.put(tags.keyAt(i), tags.valueAt(i));
+			}
 			return (SELF) this;
 		}
 
@@ -132,7 +400,7 @@ public class Tags {
 		}
 
 		public Tags buildTags() {
-			return new Tags(Collections.unmodifiableMap(this.tags));
+			return new Tags(this.tags);
 		}
 
 	}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.rsocket.broker.common.RandomIdGenerator.VARIANT;
+
+/**
+ * Version 7 ids: 48 bits of unix epoch milliseconds, followed by a 12 bit sequence
+ * and 62 bits of which the first 14 identify the generating thread and the rest are
+ * random. The sequence orders ids created within the same millisecond, when it
+ * overflows the timestamp is borrowed from the next millisecond.
+ *
+ * Each thread keeps its own sequence, so generating never contends on shared state.
+ * Ids of one thread are strictly increasing as unsigned numbers, ids of different
+ * threads are only ordered by millisecond and are told apart by their thread bits.
+ */
+final class TimeOrderedIdGenerator implements IdGenerator {
+
+	static final TimeOrderedIdGenerator INSTANCE = new TimeOrderedIdGenerator();
+
+	private static final int SEQUENCE_BITS = 12;
+
+	private static final int THREAD_BITS = 14;
+
+	private static final int RANDOM_BITS = 62 - THREAD_BITS;
+
+	private static final long VERSION = 0x7000L;
+
+	private final AtomicInteger threads = new AtomicInteger();
+
+	private final ThreadLocal<Sequence> sequence = ThreadLocal.withInitial(
+			() -> new Sequence(threads.getAndIncrement() & ((1 << THREAD_BITS) - 1)));
+
+	private TimeOrderedIdGenerator() {
+	}
+
+	@Override
+	public Id generate() {
+		Sequence sequence = this.sequence.get();
+		long next = sequence.next(System.currentTimeMillis() << SEQUENCE_BITS);
+		long timestamp = next >>> SEQUENCE_BITS;
+		long first = (timestamp << 16) | VERSION | (next & ((1L << SEQUENCE_BITS) - 1));
+		long random = ThreadLocalRandom.current().nextLong() & ((1L << RANDOM_BITS) - 1);
+		long second = VARIANT | sequence.threadBits | random;
+		return new Id(first, second);
+	}
+
+	private static final class Sequence {
+
+		private final long threadBits;
+
+		// timestamp and sequence of the last id of this thread
+		private long last;
+
+		private Sequence(int thread) {
+			this.threadBits = (long) thread << RANDOM_BITS;
+		}
+
+		private long next(long now) {
+			this.last = Math.max(last + 1, now);
+			return this.last;
+		}
+
+	}
+
+	/**
+	 * @return the unix epoch milliseconds a time ordered id was created at.
+	 */
+	static long timestamp(Id id) {
+		return id.getFirst() >>> 16;
+	}
+
+}
@@ -18,6 +18,7 @@ package io.rsocket.broker.common;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -66,6 +67,7 @@ public enum WellKnownKey {
 
 	static final WellKnownKey[] TYPES_BY_ID;
 	static final Map<String, WellKnownKey> TYPES_BY_STRING;
+	static final Map<String, WellKnownKey> TYPES_BY_NAME;
 
 	static {
 		// precompute an array of all valid mime ids,
@@ -74,12 +76,14 @@ public enum WellKnownKey {
 		Arrays.fill(TYPES_BY_ID, UNKNOWN_RESERVED_KEY);
 		// also prepare a Map of the types by key string
 		TYPES_BY_STRING = new HashMap<>(128);
+		TYPES_BY_NAME = new HashMap<>(128);
 
 		for (WellKnownKey value : values()) {
 			if (value.getIdentifier() >= 0) {
 				TYPES_BY_ID[value.getIdentifier()] = value;
 				TYPES_BY_STRING.put(value.getString(), value);
 			}
+			TYPES_BY_NAME.put(value.name(), value);
 		}
 	}
 
@@ -102,6 +106,22 @@ public enum WellKnownKey {
 		return TYPES_BY_ID[id];
 	}
 
+	/**
+	 * Looks up a key by its enum name, ignoring case, without the exception thrown by
+	 * {@link #valueOf(String)} for unknown names.
+	 * @return the key or null when the name is not a well known key.
+	 */
+	public static WellKnownKey fromName(String name) {
+		if (name == null) {
+			return null;
+		}
+		WellKnownKey key = TYPES_BY_NAME.get(name);
+		if (key == null) {
+			key = TYPES_BY_NAME.get(name.toUpperCase(Locale.ROOT));
+		}
+		return key;
+	}
+
 	public static WellKnownKey fromMimeType(String mimeType) {
 		if (mimeType == null) {
 			throw new IllegalArgumentException("type must be non-null");
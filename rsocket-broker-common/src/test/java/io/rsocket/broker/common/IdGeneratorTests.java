@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdGeneratorTests {
+
+	@Test
+	void threadLocalRandomIsVersion4() {
+		IdGenerator generator = IdGenerator.threadLocalRandom();
+		Set<Id> ids = new HashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			Id id = generator.generate();
+			UUID uuid = new UUID(id.getFirst(), id.getSecond());
+			assertThat(uuid.version()).isEqualTo(4);
+			assertThat(uuid.variant()).isEqualTo(2);
+			ids.add(id);
+		}
+		assertThat(ids).hasSize(1000);
+	}
+
+	@Test
+	void timeOrderedIsVersion7AndIncreasing() {
+		IdGenerator generator = IdGenerator.timeOrdered();
+		long before = System.currentTimeMillis();
+		Id previous = generator.generate();
+		for (int i = 0; i < 10_000; i++) {
+			Id id = generator.generate();
+			UUID uuid = new UUID(id.getFirst(), id.getSecond());
+			assertThat(uuid.version()).isEqualTo(7);
+			assertThat(uuid.variant()).isEqualTo(2);
+			assertThat(Long.compareUnsigned(id.getFirst(), previous.getFirst())).isPositive();
+			previous = id;
+		}
+		assertThat(TimeOrderedIdGenerator.timestamp(previous)).isGreaterThanOrEqualTo(before);
+	}
+
+	@Test
+	void timeOrderedIsUniqueAcrossThreads() throws InterruptedException {
+		IdGenerator generator = IdGenerator.timeOrdered();
+		Set<Id> ids = ConcurrentHashMap.newKeySet();
+		AtomicBoolean ordered = new AtomicBoolean(true);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				Id previous = generator.generate();
+				ids.add(previous);
+				for (int i = 0; i < 10_000; i++) {
+					Id id = generator.generate();
+					// each thread has its own increasing sequence
+					if (Long.compareUnsigned(id.getFirst(), previous.getFirst()) <= 0) {
+						ordered.set(false);
+					}
+					ids.add(id);
+					previous = id;
+				}
+			}));
+		}
+		threads.forEach(Thread::start);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(ordered).isTrue();
+		assertThat(ids).hasSize(4 * 10_001);
+	}
+
+}
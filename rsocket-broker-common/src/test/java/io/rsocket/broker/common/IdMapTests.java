@@ -0,0 +1,105 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdMapTests {
+
+	@Test
+	void hashCodeMatchesStaticHash() {
+		Id id = Id.random();
+		assertThat(id.hashCode()).isEqualTo(Id.hash(id.getFirst(), id.getSecond()))
+				.isEqualTo(new Id(id.getFirst(), id.getSecond()).hashCode());
+	}
+
+	@Test
+	void putGetRemove() {
+		IdMap<String> map = new IdMap<>(2);
+		Id id = Id.random();
+		assertThat(map.put(id, "a")).isNull();
+		assertThat(map.put(id, "b")).isEqualTo("a");
+		assertThat(map.get(id.getFirst(), id.getSecond())).isEqualTo("b");
+		assertThat(map.containsKey(id)).isTrue();
+		assertThat(map.size()).isEqualTo(1);
+		assertThat(map.remove(id)).isEqualTo("b");
+		assertThat(map.get(id)).isNull();
+		assertThat(map.isEmpty()).isTrue();
+	}
+
+	@Test
+	void matchesHashMapUnderChurn() {
+		Random random = new Random(42);
+		// small key space so that removals hit clusters of colliding slots
+		List<Id> ids = new ArrayList<>();
+		for (int i = 0; i < 2_000; i++) {
+			ids.add(new Id(random.nextInt(4), random.nextLong()));
+		}
+		IdMap<Integer> map = new IdMap<>();
+		IdSet set = new IdSet();
+		IdToLongMap longMap = new IdToLongMap(16, -1L);
+		Map<Id, Integer> expected = new HashMap<>();
+
+		for (int i = 0; i < 50_000; i++) {
+			Id id = ids.get(random.nextInt(ids.size()));
+			if (random.nextInt(3) == 0) {
+				assertThat(map.remove(id)).isEqualTo(expected.remove(id));
+				set.remove(id);
+				longMap.remove(id);
+			}
+			else {
+				assertThat(map.put(id, i)).isEqualTo(expected.put(id, i));
+				set.add(id);
+				longMap.put(id, i);
+			}
+		}
+
+		assertThat(map.size()).isEqualTo(expected.size());
+		assertThat(set.size()).isEqualTo(expected.size());
+		assertThat(longMap.size()).isEqualTo(expected.size());
+		for (Id id : ids) {
+			Integer value = expected.get(id);
+			assertThat(map.get(id)).isEqualTo(value);
+			assertThat(set.contains(id)).isEqualTo(value != null);
+			assertThat(longMap.get(id)).isEqualTo(value == null ? -1L : value.longValue());
+		}
+
+		Map<Id, Integer> visited = new HashMap<>();
+		map.forEach((first, second, value) -> visited.put(new Id(first, second), value));
+		assertThat(visited).isEqualTo(expected);
+	}
+
+	@Test
+	void addToCounts() {
+		IdToLongMap map = new IdToLongMap();
+		Id id = Id.random();
+		assertThat(map.get(id)).isZero();
+		assertThat(map.addTo(id, 2)).isEqualTo(2);
+		assertThat(map.addTo(id, 3)).isEqualTo(5);
+		map.clear();
+		assertThat(map.containsKey(id)).isFalse();
+	}
+
+}
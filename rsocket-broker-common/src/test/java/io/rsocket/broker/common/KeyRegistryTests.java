@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KeyRegistryTests {
+
+	@Test
+	void canonicalInstances() {
+		KeyRegistry registry = new KeyRegistry(16);
+		Key key = registry.of("mycustomkey");
+
+		assertThat(registry.of("mycustomkey")).isSameAs(key);
+		assertThat(registry.of(new MutableKey("mycustomkey"))).isSameAs(key);
+		assertThat(registry.of(MutableKey.of(WellKnownKey.ZONE))).isSameAs(Key.of(WellKnownKey.ZONE));
+		assertThat(registry.size()).isEqualTo(1);
+	}
+
+	@Test
+	void boundedGrowth() {
+		KeyRegistry registry = new KeyRegistry(2);
+		Key first = registry.of("first");
+		Key second = registry.of("second");
+		// referenced since registered, so "second" is evicted
+		registry.of("first");
+		Key third = registry.of("third");
+
+		assertThat(registry.size()).isEqualTo(2);
+		assertThat(registry.of("first")).isSameAs(first);
+		assertThat(registry.of("third")).isSameAs(third);
+		assertThat(registry.of("second")).isNotSameAs(second).isEqualTo(second);
+		assertThat(registry.size()).isEqualTo(2);
+		assertThat(second.hashCode()).isEqualTo(new ImmutableKey("second").hashCode());
+	}
+
+	@Test
+	void distinctKeysNeverFillTheRegistry() {
+		KeyRegistry registry = new KeyRegistry(16);
+		for (int i = 0; i < 1000; i++) {
+			registry.of("peerkey" + i);
+		}
+		Key key = registry.of("mycustomkey");
+
+		assertThat(registry.size()).isEqualTo(16);
+		assertThat(registry.of("mycustomkey")).isSameAs(key);
+	}
+
+	@Test
+	void zeroSizeNeverCaches() {
+		KeyRegistry registry = new KeyRegistry(0);
+		assertThat(registry.of("mycustomkey")).isNotSameAs(registry.of("mycustomkey"))
+				.isEqualTo(registry.of("mycustomkey"));
+		assertThat(registry.size()).isZero();
+	}
+
+	@Test
+	void defaultRegistry() {
+		assertThat(Key.of("anothercustomkey")).isSameAs(Key.of("anothercustomkey"));
+	}
+
+	@Test
+	void mutableKeyResolvesWellKnownNames() {
+		assertThat(new MutableKey("service_name").getWellKnownKey()).isEqualTo(WellKnownKey.SERVICE_NAME);
+		assertThat(new MutableKey("notwellknown").getWellKnownKey()).isNull();
+		assertThat(WellKnownKey.fromName("Zone")).isEqualTo(WellKnownKey.ZONE);
+		assertThat(WellKnownKey.fromName("nope")).isNull();
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.common;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class TagsTests {
+
+	@Test
+	void lookups() {
+		Tags tags = Tags.builder().with("zone", "a")
+				.with(WellKnownKey.REGION, "us-east-1")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("cluster", "b")
+				.buildTags();
+
+		assertThat(tags.size()).isEqualTo(4);
+		assertThat(tags.get(WellKnownKey.SERVICE_NAME)).isEqualTo("myservice");
+		assertThat(tags.get(WellKnownKey.REGION)).isEqualTo("us-east-1");
+		assertThat(tags.get(WellKnownKey.ZONE)).isNull();
+		assertThat(tags.get("zone")).isEqualTo("a");
+		assertThat(tags.get("cluster")).isEqualTo("b");
+		assertThat(tags.get("missing")).isNull();
+		assertThat(tags.containsKey(WellKnownKey.REGION)).isTrue();
+		assertThat(tags.containsKey("zone")).isTrue();
+		assertThat(tags.containsKey(MutableKey.of("zone"))).isTrue();
+		assertThat(tags.wellKnownMask()).isEqualTo((1L << WellKnownKey.SERVICE_NAME.ordinal())
+				| (1L << WellKnownKey.REGION.ordinal()));
+	}
+
+	@Test
+	void canonicalOrder() {
+		Tags tags = Tags.builder().with("zone", "a")
+				.with(WellKnownKey.REGION, "us-east-1")
+				.with("äpfel", "c")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("cluster", "b")
+				.buildTags();
+
+		assertThat(tags.asMap().keySet()).containsExactly(Key.of(WellKnownKey.SERVICE_NAME),
+				Key.of(WellKnownKey.REGION), Key.of("cluster"), Key.of("zone"), Key.of("äpfel"));
+	}
+
+	@Test
+	void indexedAccess() {
+		Tags tags = Tags.builder().with("zone", "a")
+				.with(WellKnownKey.REGION, "us-east-1")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+
+		assertThat(tags.keyAt(0)).isEqualTo(Key.of(WellKnownKey.SERVICE_NAME));
+		assertThat(tags.valueAt(0)).isEqualTo("myservice");
+		assertThat(tags.keyAt(1)).isEqualTo(Key.of(WellKnownKey.REGION));
+		assertThat(tags.valueAt(1)).isEqualTo("us-east-1");
+		assertThat(tags.keyAt(2)).isEqualTo(Key.of("zone"));
+		assertThat(tags.valueAt(2)).isEqualTo("a");
+		assertThatExceptionOfType(IndexOutOfBoundsException.class).isThrownBy(() -> tags.keyAt(3));
+	}
+
+	@Test
+	void equalsIgnoresInsertionOrder() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("mykey", "myvalue")
+				.buildTags();
+		Tags other = Tags.builder().with("mykey", "myvalue")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+		Tags different = Tags.builder().with("mykey", "othervalue")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+
+		assertThat(tags).isEqualTo(other).hasSameHashCodeAs(other).isNotEqualTo(different);
+		assertThat(Tags.builder().buildTags()).isEqualTo(Tags.empty());
+	}
+
+	@Test
+	void mapViewAndConstructor() {
+		Map<Key, String> map = new LinkedHashMap<>();
+		map.put(Key.of("mykey"), "myvalue");
+		map.put(Key.of(WellKnownKey.ROUTE_ID), "22");
+		Tags tags = new Tags(map);
+
+		assertThat(tags.asMap()).isEqualTo(map)
+				.containsEntry(Key.of("mykey"), "myvalue")
+				.containsEntry(Key.of(WellKnownKey.ROUTE_ID), "22");
+		assertThat(Tags.builder().with(tags).buildTags()).isEqualTo(tags);
+		assertThat(tags.toString()).isEqualTo("Tags{" + Key.of(WellKnownKey.ROUTE_ID) + "=22, " + Key.of("mykey") + "=myvalue}");
+	}
+
+}
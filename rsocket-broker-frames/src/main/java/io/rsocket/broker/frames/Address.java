@@ -83,8 +83,16 @@ public class Address extends BrokerFrame {
 	}
 
 	public static Address from(ByteBuf byteBuf, int flags) {
+		return from(byteBuf, flags, null);
+	}
+
+	public static Address from(ByteBuf byteBuf, int flags, Utf8InternCache cache) {
+		return from(byteBuf, flags, null, cache);
+	}
+
+	public static Address from(ByteBuf byteBuf, int flags, TagDictionary dictionary, Utf8InternCache cache) {
 		return from(originRouteId(byteBuf)).withMetadata(metadata(byteBuf))
-				.with(tags(byteBuf)).flags(flags).build();
+				.with(tags(byteBuf, dictionary, cache)).flags(flags).build();
 	}
 
 	public static final class Builder extends Tags.Builder<Builder> {
@@ -119,6 +127,24 @@ public class Address extends BrokerFrame {
 			return this;
 		}
 
+		/**
+		 * Encodes tags in canonical order with their fingerprint, see
+		 * {@link AddressFlyweight#FLAGS_C}.
+		 */
+		public Builder canonical() {
+			flags |= AddressFlyweight.FLAGS_C;
+			return this;
+		}
+
+		/**
+		 * Writes metadata and tags as length prefixed blocks, see
+		 * {@link AddressFlyweight#FLAGS_L}. Without it the metadata is not sent.
+		 */
+		public Builder lengthPrefixed() {
+			flags |= AddressFlyweight.FLAGS_L;
+			return this;
+		}
+
 		public Builder encrypted() {
 			flags |= AddressFlyweight.FLAGS_E;
 			return this;
@@ -20,6 +20,7 @@ import java.util.Objects;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
 import io.rsocket.broker.common.Id;
 import io.rsocket.broker.common.Tags;
 
@@ -41,39 +42,242 @@ public class AddressFlyweight {
 	public static final int FLAGS_M = 0b00_0100_0000;
 	/** (S)hard flag: a value of 1 indicates shard broker */
 	public static final int FLAGS_S = 0b00_0010_0000;
+	/** (D)ictionary flag: a value of 1 indicates tags are coded against a {@link TagDictionary} */
+	public static final int FLAGS_D = 0b00_0000_0001;
+	/** (L)ength flag: a value of 1 indicates metadata and tags are length prefixed blocks */
+	public static final int FLAGS_L = 0b00_0000_0010;
+	/** (C)anonical flag: a value of 1 indicates tags are in canonical order and preceded by their fingerprint */
+	public static final int FLAGS_C = 0b00_0000_0100;
 
 	static final int ROUTING_TYPE_MASK = 0b11_0001_1111;
 
+	private static final int FINGERPRINT_OFFSET = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
+
+	// canonical tags are never dictionary coded, so the position takes the place of the fingerprint
+	private static final int DICTIONARY_POSITION_OFFSET = FINGERPRINT_OFFSET;
+
+	private static final int MAX_BLOCK_LENGTH = 0xFFFF;
+
+	/**
+	 * Encodes an Address frame. Metadata can only be told apart from tags in length
+	 * prefixed blocks, so it is only written when {@link #FLAGS_L} is set in the given
+	 * flags, brokers that do not know the flag read the tags at the usual offset.
+	 */
 	public static ByteBuf encode(ByteBufAllocator allocator, Id originRouteId, Tags metadata, Tags tags, int flags) {
+		return encode(allocator, originRouteId, metadata, tags, flags, null);
+	}
+
+	/**
+	 * Encodes tags against the dictionary negotiated for the connection in
+	 * {@link RouteSetupFlyweight}, setting {@link #FLAGS_D}. The frame carries the
+	 * position of the dictionary before its tags were added, so a decoder that missed a
+	 * frame fails rather than resolving indexes to the wrong tags.
+	 * @param dictionary the dictionary of the connection, plain encoding when null.
+	 */
+	public static ByteBuf encode(ByteBufAllocator allocator, Id originRouteId, Tags metadata, Tags tags, int flags,
+			TagDictionary dictionary) {
 		Objects.requireNonNull(originRouteId, "originRouteId may not be null");
 		Objects.requireNonNull(tags, "tags may not be null");
 
-		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ADDRESS, flags);
+		if (dictionary != null) {
+			flags |= FLAGS_D;
+		}
+		else {
+			// flags of a decoded dictionary coded frame, the tags are now written literally
+			flags &= ~FLAGS_D;
+		}
+		boolean canonical = (flags & FLAGS_C) == FLAGS_C;
+		if (canonical) {
+			// Tags always iterate in canonical order
+			if (dictionary != null) {
+				throw new IllegalArgumentException("canonical tags can not be dictionary coded");
+			}
+		}
+		// the literal length is an upper bound for dictionary coded tags
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ADDRESS, flags,
+				encodedLength(metadata, tags, flags));
 		encodeId(byteBuf, originRouteId);
+		if (canonical) {
+			// fingerprint is set once the tags are written
+			byteBuf.writeLong(0);
+		}
+		if (dictionary != null) {
+			byteBuf.writeInt(dictionary.position());
+		}
 
-		//FIXME: how to deal with empty metadata?
-		//TagsFlyweight.encode(byteBuf, metadata);
-
-		TagsFlyweight.encode(byteBuf, tags);
+		if ((flags & FLAGS_L) == FLAGS_L) {
+			encodeBlock(byteBuf, metadata == null ? Tags.empty() : metadata, null);
+			int lengthIndex = byteBuf.writerIndex();
+			encodeBlock(byteBuf, tags, dictionary);
+			if (canonical) {
+				byteBuf.setLong(FINGERPRINT_OFFSET, TagsFlyweight.fingerprint(byteBuf,
+						lengthIndex + Short.BYTES, byteBuf.writerIndex() - lengthIndex - Short.BYTES));
+			}
+		}
+		else {
+			int tagsIndex = byteBuf.writerIndex();
+			TagsFlyweight.encode(byteBuf, tags, dictionary);
+			if (canonical) {
+				byteBuf.setLong(FINGERPRINT_OFFSET, TagsFlyweight.fingerprint(byteBuf,
+						tagsIndex, byteBuf.writerIndex() - tagsIndex));
+			}
+		}
 
 		return byteBuf;
 	}
 
+	private static void encodeBlock(ByteBuf byteBuf, Tags tags, TagDictionary dictionary) {
+		int lengthIndex = byteBuf.writerIndex();
+		byteBuf.writeShort(0);
+		TagsFlyweight.encode(byteBuf, tags, dictionary);
+		int length = byteBuf.writerIndex() - lengthIndex - Short.BYTES;
+		if (length > MAX_BLOCK_LENGTH) {
+			throw new IllegalArgumentException("encoded tags exceed " + MAX_BLOCK_LENGTH + " bytes");
+		}
+		byteBuf.setShort(lengthIndex, length);
+	}
+
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given fields.
+	 */
+	public static int encodedLength(Tags metadata, Tags tags) {
+		return encodedLength(metadata, tags, 0);
+	}
+
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given fields and
+	 * flags.
+	 */
+	public static int encodedLength(Tags metadata, Tags tags, int flags) {
+		int length = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + TagsFlyweight.encodedLength(tags);
+		if ((flags & FLAGS_C) == FLAGS_C) {
+			length += Long.BYTES;
+		}
+		if ((flags & FLAGS_D) == FLAGS_D) {
+			length += Integer.BYTES;
+		}
+		if ((flags & FLAGS_L) == FLAGS_L) {
+			length += Short.BYTES + Short.BYTES;
+			if (metadata != null) {
+				length += TagsFlyweight.encodedLength(metadata);
+			}
+		}
+		return length;
+	}
+
 	public static Id originRouteId(ByteBuf byteBuf) {
 		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
 	}
 
+	/**
+	 * @return the 64-bit FNV-1a hash of the canonical tag bytes.
+	 * @throws IllegalStateException if {@link #FLAGS_C} is not set.
+	 */
+	public static long fingerprint(ByteBuf byteBuf) {
+		if (!hasFingerprint(byteBuf)) {
+			throw new IllegalStateException("Address tags are not canonical");
+		}
+		return byteBuf.getLong(FINGERPRINT_OFFSET);
+	}
+
+	public static boolean hasFingerprint(ByteBuf byteBuf) {
+		return (FrameHeaderFlyweight.flags(byteBuf) & FLAGS_C) == FLAGS_C;
+	}
+
+	/**
+	 * Compares the encoded tags of two frames byte by byte. Equal canonical tags always
+	 * have equal bytes, so with {@link #FLAGS_C} set on both frames this is tag set
+	 * equality without decoding.
+	 */
+	public static boolean tagsEquals(ByteBuf byteBuf, ByteBuf other) {
+		int length = tagsLength(byteBuf);
+		return length == tagsLength(other)
+				&& ByteBufUtil.equals(byteBuf, tagsOffset(byteBuf), other, tagsOffset(other), length);
+	}
+
 	public static Tags metadata(ByteBuf byteBuf) {
-		//int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
-		//return TagsFlyweight.decode(offset, byteBuf);
-		return Tags.empty();
+		if (!isLengthPrefixed(byteBuf) || metadataLength(byteBuf) == 0) {
+			return Tags.empty();
+		}
+		return TagsFlyweight.decode(metadataOffset(byteBuf) + Short.BYTES, byteBuf);
+	}
+
+	/**
+	 * @return the number of bytes of the metadata tags, always 0 without
+	 * {@link #FLAGS_L}.
+	 */
+	public static int metadataLength(ByteBuf byteBuf) {
+		if (!isLengthPrefixed(byteBuf)) {
+			return 0;
+		}
+		return byteBuf.getUnsignedShort(metadataOffset(byteBuf));
+	}
+
+	/**
+	 * @return the number of bytes of the destination tags, read from the length prefix
+	 * when {@link #FLAGS_L} is set, otherwise the tags run to the end of the frame.
+	 */
+	public static int tagsLength(ByteBuf byteBuf) {
+		int tagsOffset = tagsOffset(byteBuf);
+		if (!isLengthPrefixed(byteBuf)) {
+			return byteBuf.writerIndex() - tagsOffset;
+		}
+		return byteBuf.getUnsignedShort(tagsOffset - Short.BYTES);
 	}
 
 	public static Tags tags(ByteBuf byteBuf) {
-		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
-		// metadata length
-		//offset += TagsFlyweight.length(offset, byteBuf);
-		return TagsFlyweight.decode(offset, byteBuf);
+		return tags(byteBuf, null, null);
+	}
+
+	public static Tags tags(ByteBuf byteBuf, Utf8InternCache cache) {
+		return tags(byteBuf, null, cache);
+	}
+
+	/**
+	 * @param dictionary the dictionary of the connection, required when
+	 * {@link #FLAGS_D} is set.
+	 * @param cache the cache of canonical instances, may be null.
+	 * @throws IllegalStateException if the tags are dictionary coded and the dictionary
+	 * is not at the position the frame was encoded at.
+	 */
+	public static Tags tags(ByteBuf byteBuf, TagDictionary dictionary, Utf8InternCache cache) {
+		int flags = FrameHeaderFlyweight.flags(byteBuf);
+		int offset = tagsOffset(byteBuf);
+		if ((flags & FLAGS_D) == FLAGS_D) {
+			if (dictionary == null) {
+				throw new IllegalStateException("Address tags are dictionary coded but no TagDictionary was given");
+			}
+			// checked even for empty tags, the tags block is last so decode finds no tags
+			return TagsFlyweight.decode(offset, byteBuf, dictionary, byteBuf.getInt(DICTIONARY_POSITION_OFFSET),
+					cache);
+		}
+		if ((flags & FLAGS_L) == FLAGS_L && byteBuf.getUnsignedShort(offset - Short.BYTES) == 0) {
+			return Tags.empty();
+		}
+		return TagsFlyweight.decode(offset, byteBuf, cache);
+	}
+
+	static int tagsOffset(ByteBuf byteBuf) {
+		int offset = metadataOffset(byteBuf);
+		if (!isLengthPrefixed(byteBuf)) {
+			return offset;
+		}
+		// skip metadata length, metadata and tags length
+		return offset + Short.BYTES + byteBuf.getUnsignedShort(offset) + Short.BYTES;
+	}
+
+	private static int metadataOffset(ByteBuf byteBuf) {
+		if (hasFingerprint(byteBuf)) {
+			return FINGERPRINT_OFFSET + Long.BYTES;
+		}
+		if ((FrameHeaderFlyweight.flags(byteBuf) & FLAGS_D) == FLAGS_D) {
+			return DICTIONARY_POSITION_OFFSET + Integer.BYTES;
+		}
+		return FINGERPRINT_OFFSET;
+	}
+
+	private static boolean isLengthPrefixed(ByteBuf byteBuf) {
+		return (FrameHeaderFlyweight.flags(byteBuf) & FLAGS_L) == FLAGS_L;
 	}
 
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+
+import static io.rsocket.broker.frames.AddressFlyweight.FLAGS_E;
+
+/**
+ * Lazy, read-only view over an encoded Address frame.
+ */
+public final class AddressView extends BrokerFrameView {
+
+	private AddressView(ByteBuf byteBuf) {
+		super(byteBuf, FrameType.ADDRESS);
+	}
+
+	public Id getOriginRouteId() {
+		return AddressFlyweight.originRouteId(content());
+	}
+
+	public Tags getMetadata() {
+		return AddressFlyweight.metadata(content());
+	}
+
+	/**
+	 * @see AddressFlyweight#fingerprint(ByteBuf)
+	 */
+	public long getFingerprint() {
+		return AddressFlyweight.fingerprint(content());
+	}
+
+	public boolean isEncrypted() {
+		int flag = getFlags() & FLAGS_E;
+		return flag == FLAGS_E;
+	}
+
+	public RoutingType getRoutingType() {
+		int routingType = getFlags() & (~AddressFlyweight.ROUTING_TYPE_MASK);
+		return RoutingType.from(routingType);
+	}
+
+	@Override
+	protected int tagsOffset() {
+		return AddressFlyweight.tagsOffset(content());
+	}
+
+	/**
+	 * Creates a view that retains the given buffer until the view is released.
+	 * @param byteBuf an encoded Address frame.
+	 * @return the view.
+	 */
+	public static AddressView from(ByteBuf byteBuf) {
+		return new AddressView(byteBuf);
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Typed callbacks for encoded broker frames. {@link #dispatch(ByteBuf, BrokerFrameHandler)}
+ * reads the frame header once and calls the method for its {@link FrameType}, so a
+ * handler can work straight from the buffer, for example with the flyweights or the
+ * {@link BrokerFrameView} implementations, without building a {@link BrokerFrame}.
+ *
+ * @param <T> the result of handling a frame.
+ */
+public interface BrokerFrameHandler<T> {
+
+	T onRouteSetup(ByteBuf byteBuf, int flags);
+
+	T onRouteJoin(ByteBuf byteBuf, int flags);
+
+	T onRouteRemove(ByteBuf byteBuf, int flags);
+
+	T onBrokerInfo(ByteBuf byteBuf, int flags);
+
+	T onAddress(ByteBuf byteBuf, int flags);
+
+	default T onRouteEventBatch(ByteBuf byteBuf, int flags) {
+		return onUnknown(byteBuf, FrameType.ROUTE_EVENT_BATCH, flags);
+	}
+
+	default T onUnknown(ByteBuf byteBuf, FrameType frameType, int flags) {
+		throw new IllegalArgumentException("Unknown FrameType " + frameType);
+	}
+
+	static <T> T dispatch(ByteBuf byteBuf, BrokerFrameHandler<T> handler) {
+		long header = FrameHeaderFlyweight.header(byteBuf, byteBuf.readerIndex());
+		FrameType frameType = FrameHeaderFlyweight.frameType(header);
+		int flags = FrameHeaderFlyweight.flags(header);
+		switch (frameType) {
+		case ROUTE_SETUP:
+			return handler.onRouteSetup(byteBuf, flags);
+		case ROUTE_JOIN:
+			return handler.onRouteJoin(byteBuf, flags);
+		case ROUTE_REMOVE:
+			return handler.onRouteRemove(byteBuf, flags);
+		case BROKER_INFO:
+			return handler.onBrokerInfo(byteBuf, flags);
+		case ADDRESS:
+			return handler.onAddress(byteBuf, flags);
+		case ROUTE_EVENT_BATCH:
+			return handler.onRouteEventBatch(byteBuf, flags);
+		default:
+			return handler.onUnknown(byteBuf, frameType, flags);
+		}
+	}
+
+}
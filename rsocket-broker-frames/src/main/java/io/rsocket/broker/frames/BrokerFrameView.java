@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCounted;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+
+/**
+ * Read-only view over an encoded broker frame. Fields are decoded on demand from the
+ * retained {@link ByteBuf} and tags are looked up in place, so a consumer only pays
+ * for what it reads. Views must be released once no longer used. Dictionary coded
+ * tags can not be read in place, tag lookups on them throw
+ * {@link IllegalStateException}.
+ */
+public abstract class BrokerFrameView implements ReferenceCounted {
+
+	private final ByteBuf byteBuf;
+
+	protected BrokerFrameView(ByteBuf byteBuf, FrameType expectedFrameType) {
+		FrameType frameType = FrameHeaderFlyweight.frameType(byteBuf);
+		if (frameType != expectedFrameType) {
+			throw new IllegalArgumentException("expected FrameType " + expectedFrameType + " but was " + frameType);
+		}
+		this.byteBuf = byteBuf.retain();
+	}
+
+	public ByteBuf content() {
+		return this.byteBuf;
+	}
+
+	public FrameType getFrameType() {
+		return FrameHeaderFlyweight.frameType(byteBuf);
+	}
+
+	public int getFlags() {
+		return FrameHeaderFlyweight.flags(byteBuf);
+	}
+
+	public String getTag(WellKnownKey key) {
+		int valueOffset = TagsFlyweight.valueOffset(tagsOffset(), byteBuf, key);
+		return valueOffset < 0 ? null : TagsFlyweight.decodeValue(valueOffset, byteBuf);
+	}
+
+	public String getTag(String key) {
+		int valueOffset = TagsFlyweight.valueOffset(tagsOffset(), byteBuf, key);
+		return valueOffset < 0 ? null : TagsFlyweight.decodeValue(valueOffset, byteBuf);
+	}
+
+	public boolean hasTag(WellKnownKey key) {
+		return TagsFlyweight.valueOffset(tagsOffset(), byteBuf, key) >= 0;
+	}
+
+	public boolean hasTag(String key) {
+		return TagsFlyweight.valueOffset(tagsOffset(), byteBuf, key) >= 0;
+	}
+
+	/**
+	 * Decodes all tags, prefer {@link #getTag(WellKnownKey)} when only a few are needed.
+	 * @return the decoded tags.
+	 */
+	public Tags getTags() {
+		return TagsFlyweight.decode(tagsOffset(), byteBuf);
+	}
+
+	protected abstract int tagsOffset();
+
+	@Override
+	public int refCnt() {
+		return byteBuf.refCnt();
+	}
+
+	@Override
+	public BrokerFrameView retain() {
+		byteBuf.retain();
+		return this;
+	}
+
+	@Override
+	public BrokerFrameView retain(int increment) {
+		byteBuf.retain(increment);
+		return this;
+	}
+
+	@Override
+	public BrokerFrameView touch() {
+		byteBuf.touch();
+		return this;
+	}
+
+	@Override
+	public BrokerFrameView touch(Object hint) {
+		byteBuf.touch(hint);
+		return this;
+	}
+
+	@Override
+	public boolean release() {
+		return byteBuf.release();
+	}
+
+	@Override
+	public boolean release(int decrement) {
+		return byteBuf.release(decrement);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[frameType=" + getFrameType() + ", flags=" + getFlags() + "]";
+	}
+
+}
@@ -94,9 +94,13 @@ public final class BrokerInfo extends BrokerFrame {
 	}
 
 	public static BrokerInfo from(ByteBuf byteBuf) {
+		return from(byteBuf, null);
+	}
+
+	public static BrokerInfo from(ByteBuf byteBuf, Utf8InternCache cache) {
 		return from(BrokerInfoFlyweight.brokerId(byteBuf))
 				.timestamp(BrokerInfoFlyweight.timestamp(byteBuf))
-				.with(BrokerInfoFlyweight.tags(byteBuf))
+				.with(BrokerInfoFlyweight.tags(byteBuf, cache))
 				.build();
 	}
 
@@ -35,7 +35,8 @@ public class BrokerInfoFlyweight {
 		Objects.requireNonNull(brokerId, "brokerId may not be null");
 		Objects.requireNonNull(tags, "tags may not be null");
 
-		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.BROKER_INFO, flags);
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.BROKER_INFO, flags,
+				encodedLength(tags));
 		encodeId(byteBuf, brokerId);
 
 		byteBuf.writeLong(timestamp);
@@ -45,6 +46,14 @@ public class BrokerInfoFlyweight {
 		return byteBuf;
 	}
 
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given fields.
+	 */
+	public static int encodedLength(Tags tags) {
+		return FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + Long.BYTES
+				+ TagsFlyweight.encodedLength(tags);
+	}
+
 	public static Id brokerId(ByteBuf byteBuf) {
 		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
 	}
@@ -55,8 +64,15 @@ public class BrokerInfoFlyweight {
 	}
 
 	public static Tags tags(ByteBuf byteBuf) {
-		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
-		return TagsFlyweight.decode(offset, byteBuf);
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf);
+	}
+
+	public static Tags tags(ByteBuf byteBuf, Utf8InternCache cache) {
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf, cache);
+	}
+
+	static int tagsOffset(ByteBuf byteBuf) {
+		return FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
 	}
 
 }
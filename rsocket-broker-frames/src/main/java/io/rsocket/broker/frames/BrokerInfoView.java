@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Id;
+
+/**
+ * Lazy, read-only view over an encoded BrokerInfo frame.
+ */
+public final class BrokerInfoView extends BrokerFrameView {
+
+	private BrokerInfoView(ByteBuf byteBuf) {
+		super(byteBuf, FrameType.BROKER_INFO);
+	}
+
+	public Id getBrokerId() {
+		return BrokerInfoFlyweight.brokerId(content());
+	}
+
+	public long getTimestamp() {
+		return BrokerInfoFlyweight.timestamp(content());
+	}
+
+	@Override
+	protected int tagsOffset() {
+		return BrokerInfoFlyweight.tagsOffset(content());
+	}
+
+	/**
+	 * Creates a view that retains the given buffer until the view is released.
+	 * @param byteBuf an encoded BrokerInfo frame.
+	 * @return the view.
+	 */
+	public static BrokerInfoView from(ByteBuf byteBuf) {
+		return new BrokerInfoView(byteBuf);
+	}
+
+}
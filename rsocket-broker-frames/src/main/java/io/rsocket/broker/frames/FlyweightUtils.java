@@ -34,11 +34,22 @@ public class FlyweightUtils {
 		ByteBufUtil.reserveAndWriteUtf8(byteBuf, s, length);
 	}
 
+	static int byteStringLength(String s) {
+		return Byte.BYTES + ByteBufUtil.utf8Bytes(s);
+	}
+
 	static String decodeByteString(ByteBuf byteBuf, int offset) {
+		return decodeByteString(byteBuf, offset, null);
+	}
+
+	static String decodeByteString(ByteBuf byteBuf, int offset, Utf8InternCache cache) {
 		int length = byteBuf.getByte(offset);
 		length &= UNSIGNED_BYTE_MAX_VALUE;
 		offset += Byte.BYTES;
 
+		if (cache != null) {
+			return cache.intern(byteBuf, offset, length);
+		}
 		return byteBuf.toString(offset, length, StandardCharsets.UTF_8);
 	}
 
@@ -48,6 +59,35 @@ public class FlyweightUtils {
 		return Byte.BYTES + length;
 	}
 
+	/**
+	 * Compares UTF-8 encoded bytes with a {@link String} without decoding them when
+	 * the {@link String} is ASCII.
+	 */
+	static boolean equalsUtf8(ByteBuf byteBuf, int offset, int length, String s) {
+		int chars = s.length();
+		// utf-8 never uses fewer bytes than there are chars
+		if (length < chars) {
+			return false;
+		}
+		if (length == chars) {
+			int i = 0;
+			for (; i < chars; i++) {
+				char c = s.charAt(i);
+				if (c >= 0x80) {
+					break;
+				}
+				if (byteBuf.getByte(offset + i) != (byte) c) {
+					return false;
+				}
+			}
+			if (i == chars) {
+				return true;
+			}
+		}
+		return length == ByteBufUtil.utf8Bytes(s)
+				&& s.equals(byteBuf.toString(offset, length, StandardCharsets.UTF_8));
+	}
+
 	/**
 	 * Requires that an {@code int} can be represented as an unsigned {@code byte}.
 	 *
@@ -39,15 +39,29 @@ public class FrameHeaderFlyweight {
 		return encode(allocator, MAJOR_VERSION, MINOR_VERSION, frameType, flags);
 	}
 
+	/**
+	 * Encodes the frame header into a buffer sized for the whole frame.
+	 * @param frameLength the exact encoded length of the frame, including the header.
+	 */
+	public static ByteBuf encode(ByteBufAllocator allocator, FrameType frameType, int flags, int frameLength) {
+		return encode(allocator, MAJOR_VERSION, MINOR_VERSION, frameType, flags, frameLength);
+	}
+
 	public static ByteBuf encode(ByteBufAllocator allocator, short majorVersion,
 			short minorVersion, FrameType frameType, int flags) {
+		return encode(allocator, majorVersion, minorVersion, frameType, flags, -1);
+	}
+
+	private static ByteBuf encode(ByteBufAllocator allocator, short majorVersion,
+			short minorVersion, FrameType frameType, int flags, int frameLength) {
 		//TODO: check that only one broker flag is set
 		//if (!frameType.canHaveMetadata() && ((flags & FLAGS_M) == FLAGS_M)) {
 		//	throw new IllegalStateException("bad value for metadata flag");
 		//}
 		int frameId = frameType.getId() << FLAG_BITS;
 		short typeAndFlags = (short) (frameId | (short) flags);
-		return allocator.buffer()
+		ByteBuf byteBuf = frameLength < 0 ? allocator.buffer() : allocator.buffer(frameLength);
+		return byteBuf
 				.writeShort(majorVersion)
 				.writeShort(minorVersion)
 				.writeShort(typeAndFlags);
@@ -62,25 +76,51 @@ public class FrameHeaderFlyweight {
 	}
 
 	public static int flags(final ByteBuf byteBuf) {
-		if (!byteBuf.isReadable(MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE + Short.BYTES)) {
+		if (!byteBuf.isReadable(BYTES)) {
 			return 0;
 		}
-		byteBuf.markReaderIndex();
-		byteBuf.skipBytes(MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE);
-		short typeAndFlags = byteBuf.readShort();
-		byteBuf.resetReaderIndex();
+		short typeAndFlags = byteBuf.getShort(byteBuf.readerIndex() + MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE);
 		return typeAndFlags & FRAME_FLAGS_MASK;
 	}
 
 	public static FrameType frameType(ByteBuf byteBuf) {
-		if (!byteBuf.isReadable(MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE + Short.BYTES)) {
+		if (!byteBuf.isReadable(BYTES)) {
 			return null;
 		}
-		byteBuf.markReaderIndex();
-		byteBuf.skipBytes(MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE);
-		short typeAndFlags = byteBuf.readShort();
-		byteBuf.resetReaderIndex();
+		short typeAndFlags = byteBuf.getShort(byteBuf.readerIndex() + MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE);
 		// move typeAndFlags right 10 bits
 		return FrameType.from(typeAndFlags >> FLAG_BITS);
 	}
+
+	/**
+	 * Reads the whole header at an absolute index without touching the reader index.
+	 * Use {@link #majorVersion(long)}, {@link #minorVersion(long)},
+	 * {@link #frameType(long)} and {@link #flags(long)} to unpack the result.
+	 * @return major version, minor version, type and flags packed in the low 48 bits.
+	 */
+	public static long header(ByteBuf byteBuf, int index) {
+		if (byteBuf.writerIndex() - index >= Long.BYTES) {
+			// a single read, the header is the first 6 of 8 big endian bytes
+			return byteBuf.getLong(index) >>> ((Long.BYTES - BYTES) * Byte.SIZE);
+		}
+		return ((byteBuf.getInt(index) & 0xFFFF_FFFFL) << Short.SIZE)
+				| byteBuf.getUnsignedShort(index + MAJOR_VERSION_SIZE + MINOR_VERSION_SIZE);
+	}
+
+	public static short majorVersion(long header) {
+		return (short) (header >>> (Short.SIZE * 2));
+	}
+
+	public static short minorVersion(long header) {
+		return (short) (header >>> Short.SIZE);
+	}
+
+	public static FrameType frameType(long header) {
+		// typeAndFlags is the lowest short, move it right 10 bits
+		return FrameType.from((int) (header & 0xFFFF) >>> FLAG_BITS);
+	}
+
+	public static int flags(long header) {
+		return (int) header & FRAME_FLAGS_MASK;
+	}
 }
@@ -52,7 +52,14 @@ public enum FrameType {
 	 * A frame that contain information forwarding a message from an origin to a
 	 * destination. This frame is intended for the metadata field.
 	 */
-	ADDRESS(0x05);
+	ADDRESS(0x05),
+
+	/**
+	 * A batch of route joins and removes from a single broker, sent in place of
+	 * individual {@link #ROUTE_JOIN} and {@link #ROUTE_REMOVE} frames when many routes
+	 * change at once.
+	 */
+	ROUTE_EVENT_BATCH(0x06);
 
 	private static FrameType[] frameTypesById;
 
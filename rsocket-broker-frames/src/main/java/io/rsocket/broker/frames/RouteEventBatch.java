@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Id;
+
+public final class RouteEventBatch extends BrokerFrame {
+
+	private final Id brokerId;
+
+	private final long timestamp;
+
+	private final List<BrokerFrame> events;
+
+	public RouteEventBatch(Id brokerId, long timestamp, List<BrokerFrame> events) {
+		super(FrameType.ROUTE_EVENT_BATCH, 0);
+		this.brokerId = brokerId;
+		this.timestamp = timestamp;
+		this.events = Collections.unmodifiableList(events);
+	}
+
+	public Id getBrokerId() {
+		return this.brokerId;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * @return the {@link RouteJoin} and {@link RouteRemove} frames of this batch in order.
+	 */
+	public List<BrokerFrame> getEvents() {
+		return this.events;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o == null || getClass() != o.getClass()) {
+			return false;
+		}
+		RouteEventBatch batch = (RouteEventBatch) o;
+		return this.timestamp == batch.timestamp
+				&& Objects.equals(this.brokerId, batch.brokerId)
+				&& Objects.equals(this.events, batch.events);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.brokerId, this.timestamp, this.events);
+	}
+
+	@Override
+	public String toString() {
+		return new StringJoiner(", ", RouteEventBatch.class.getSimpleName() + "[", "]")
+				.add("brokerId=" + brokerId)
+				.add("timestamp=" + timestamp)
+				.add("events=" + events)
+				.toString();
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static RouteEventBatch from(ByteBuf byteBuf) {
+		return from(byteBuf, null);
+	}
+
+	public static RouteEventBatch from(ByteBuf byteBuf, Utf8InternCache cache) {
+		return new RouteEventBatch(RouteEventBatchFlyweight.brokerId(byteBuf),
+				RouteEventBatchFlyweight.timestamp(byteBuf),
+				RouteEventBatchFlyweight.events(byteBuf, cache));
+	}
+
+	public static final class Builder {
+
+		private Id brokerId;
+
+		private long timestamp = System.currentTimeMillis();
+
+		private final List<BrokerFrame> events = new ArrayList<>();
+
+		public Builder brokerId(Id brokerId) {
+			this.brokerId = brokerId;
+			return this;
+		}
+
+		public Builder timestamp(long timestamp) {
+			this.timestamp = timestamp;
+			return this;
+		}
+
+		public Builder join(RouteJoin routeJoin) {
+			this.events.add(Objects.requireNonNull(routeJoin, "routeJoin may not be null"));
+			return this;
+		}
+
+		public Builder remove(RouteRemove routeRemove) {
+			this.events.add(Objects.requireNonNull(routeRemove, "routeRemove may not be null"));
+			return this;
+		}
+
+		public RouteEventBatch build() {
+			Objects.requireNonNull(brokerId, "brokerId may not be null");
+			if (timestamp <= 0) {
+				throw new IllegalArgumentException("timestamp must be > 0");
+			}
+			for (BrokerFrame event : events) {
+				Id eventBrokerId = event instanceof RouteJoin ? ((RouteJoin) event).getBrokerId()
+						: ((RouteRemove) event).getBrokerId();
+				if (!brokerId.equals(eventBrokerId)) {
+					throw new IllegalArgumentException("event brokerId must match batch brokerId");
+				}
+			}
+			return new RouteEventBatch(brokerId, timestamp, new ArrayList<>(events));
+		}
+
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+
+import static io.rsocket.broker.frames.FlyweightUtils.byteStringLength;
+import static io.rsocket.broker.frames.FlyweightUtils.decodeByteStringLength;
+import static io.rsocket.broker.frames.FlyweightUtils.decodeId;
+import static io.rsocket.broker.frames.FlyweightUtils.encodeByteString;
+import static io.rsocket.broker.frames.FlyweightUtils.encodeId;
+
+/**
+ * Route joins and removes of a single broker in one frame. The broker id and a base
+ * timestamp are written once, each entry then holds its type, route id and the
+ * difference of its timestamp to the base. Join entries add the service name and
+ * tags.
+ */
+public class RouteEventBatchFlyweight {
+
+	// set on the entry type when tags follow the service name
+	static final int ENTRY_HAS_TAGS = 0x80;
+
+	private static final int ENTRY_TYPE_MASK = 0x7F;
+
+	private static final int COUNT_OFFSET = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
+
+	private static final int ENTRIES_OFFSET = COUNT_OFFSET + Integer.BYTES;
+
+	private static final int ENTRY_FIXED_BYTES = Byte.BYTES + FlyweightUtils.ID_BYTES + Integer.BYTES;
+
+	public static ByteBuf encode(ByteBufAllocator allocator, Id brokerId, long timestamp,
+			List<? extends BrokerFrame> events, int flags) {
+		Objects.requireNonNull(brokerId, "brokerId may not be null");
+		Objects.requireNonNull(events, "events may not be null");
+
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_EVENT_BATCH, flags,
+				encodedLength(events));
+		encodeId(byteBuf, brokerId);
+		byteBuf.writeLong(timestamp);
+		byteBuf.writeInt(events.size());
+
+		for (BrokerFrame event : events) {
+			if (event instanceof RouteJoin) {
+				RouteJoin routeJoin = (RouteJoin) event;
+				requireBrokerId(brokerId, routeJoin.getBrokerId());
+				Tags tags = routeJoin.getTags();
+				boolean hasTags = TagsFlyweight.encodedLength(tags) > 0;
+				byteBuf.writeByte(hasTags ? FrameType.ROUTE_JOIN.getId() | ENTRY_HAS_TAGS : FrameType.ROUTE_JOIN.getId());
+				encodeId(byteBuf, routeJoin.getRouteId());
+				byteBuf.writeInt(timestampDelta(timestamp, routeJoin.getTimestamp()));
+				encodeByteString(byteBuf, routeJoin.getServiceName());
+				if (hasTags) {
+					TagsFlyweight.encode(byteBuf, tags);
+				}
+			}
+			else if (event instanceof RouteRemove) {
+				RouteRemove routeRemove = (RouteRemove) event;
+				requireBrokerId(brokerId, routeRemove.getBrokerId());
+				byteBuf.writeByte(FrameType.ROUTE_REMOVE.getId());
+				encodeId(byteBuf, routeRemove.getRouteId());
+				byteBuf.writeInt(timestampDelta(timestamp, routeRemove.getTimestamp()));
+			}
+			else {
+				throw new IllegalArgumentException("Unsupported route event " + event.getFrameType());
+			}
+		}
+
+		return byteBuf;
+	}
+
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given events.
+	 */
+	public static int encodedLength(List<? extends BrokerFrame> events) {
+		int length = ENTRIES_OFFSET;
+		for (BrokerFrame event : events) {
+			length += ENTRY_FIXED_BYTES;
+			if (event instanceof RouteJoin) {
+				RouteJoin routeJoin = (RouteJoin) event;
+				length += byteStringLength(routeJoin.getServiceName()) + TagsFlyweight.encodedLength(routeJoin.getTags());
+			}
+		}
+		return length;
+	}
+
+	public static Id brokerId(ByteBuf byteBuf) {
+		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
+	}
+
+	public static long timestamp(ByteBuf byteBuf) {
+		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
+		return byteBuf.getLong(offset);
+	}
+
+	public static int count(ByteBuf byteBuf) {
+		return byteBuf.getInt(COUNT_OFFSET);
+	}
+
+	public static List<BrokerFrame> events(ByteBuf byteBuf) {
+		return events(byteBuf, null);
+	}
+
+	/**
+	 * Decodes the entries as {@link RouteJoin} and {@link RouteRemove} frames carrying
+	 * the broker id and absolute timestamp of the batch.
+	 * @param cache the cache of canonical service names and tags, may be null.
+	 */
+	public static List<BrokerFrame> events(ByteBuf byteBuf, Utf8InternCache cache) {
+		Id brokerId = brokerId(byteBuf);
+		long timestamp = timestamp(byteBuf);
+		int count = count(byteBuf);
+		List<BrokerFrame> events = new ArrayList<>(count);
+
+		int offset = ENTRIES_OFFSET;
+		for (int i = 0; i < count; i++) {
+			int entryType = byteBuf.getByte(offset) & 0xFF;
+			offset += Byte.BYTES;
+			Id routeId = decodeId(byteBuf, offset);
+			offset += FlyweightUtils.ID_BYTES;
+			long entryTimestamp = timestamp + byteBuf.getInt(offset);
+			offset += Integer.BYTES;
+
+			int eventType = entryType & ENTRY_TYPE_MASK;
+			if (eventType == FrameType.ROUTE_JOIN.getId()) {
+				String serviceName = FlyweightUtils.decodeByteString(byteBuf, offset, cache);
+				offset += decodeByteStringLength(byteBuf, offset);
+				Tags tags = Tags.empty();
+				if ((entryType & ENTRY_HAS_TAGS) == ENTRY_HAS_TAGS) {
+					tags = TagsFlyweight.decode(offset, byteBuf, cache);
+					offset += TagsFlyweight.length(offset, byteBuf);
+				}
+				events.add(new RouteJoin(brokerId, routeId, entryTimestamp, serviceName, tags));
+			}
+			else if (eventType == FrameType.ROUTE_REMOVE.getId()) {
+				events.add(new RouteRemove(brokerId, routeId, entryTimestamp));
+			}
+			else {
+				throw new IllegalArgumentException("Unknown route event type " + entryType);
+			}
+		}
+
+		return events;
+	}
+
+	private static void requireBrokerId(Id brokerId, Id eventBrokerId) {
+		if (!brokerId.equals(eventBrokerId)) {
+			throw new IllegalArgumentException("route event brokerId " + eventBrokerId
+					+ " does not match batch brokerId " + brokerId);
+		}
+	}
+
+	private static int timestampDelta(long timestamp, long eventTimestamp) {
+		long delta = eventTimestamp - timestamp;
+		if (delta < Integer.MIN_VALUE || delta > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("route event timestamp " + eventTimestamp
+					+ " too far from batch timestamp " + timestamp);
+		}
+		return (int) delta;
+	}
+
+}
@@ -106,12 +106,16 @@ public final class RouteJoin extends BrokerFrame {
 	}
 
 	public static RouteJoin from(ByteBuf byteBuf) {
+		return from(byteBuf, null);
+	}
+
+	public static RouteJoin from(ByteBuf byteBuf, Utf8InternCache cache) {
 		return builder()
 				.brokerId(RouteJoinFlyweight.brokerId(byteBuf))
 				.routeId(RouteJoinFlyweight.routeId(byteBuf))
 				.timestamp(RouteJoinFlyweight.timestamp(byteBuf))
-				.serviceName(RouteJoinFlyweight.serviceName(byteBuf))
-				.with(RouteJoinFlyweight.tags(byteBuf))
+				.serviceName(RouteJoinFlyweight.serviceName(byteBuf, cache))
+				.with(RouteJoinFlyweight.tags(byteBuf, cache))
 				.build();
 	}
 
@@ -23,6 +23,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.rsocket.broker.common.Id;
 import io.rsocket.broker.common.Tags;
 
+import static io.rsocket.broker.frames.FlyweightUtils.byteStringLength;
 import static io.rsocket.broker.frames.FlyweightUtils.decodeByteStringLength;
 import static io.rsocket.broker.frames.FlyweightUtils.decodeId;
 import static io.rsocket.broker.frames.FlyweightUtils.encodeByteString;
@@ -39,7 +40,8 @@ public class RouteJoinFlyweight {
 		Objects.requireNonNull(serviceName, "serviceName may not be null");
 		Objects.requireNonNull(tags, "tags may not be null");
 
-		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_JOIN, flags);
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_JOIN, flags,
+				encodedLength(serviceName, tags));
 		encodeId(byteBuf, brokerId);
 		encodeId(byteBuf, routeId);
 		byteBuf.writeLong(timestamp);
@@ -51,6 +53,14 @@ public class RouteJoinFlyweight {
 		return byteBuf;
 	}
 
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given fields.
+	 */
+	public static int encodedLength(String serviceName, Tags tags) {
+		return FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + FlyweightUtils.ID_BYTES + Long.BYTES
+				+ byteStringLength(serviceName) + TagsFlyweight.encodedLength(tags);
+	}
+
 	public static Id brokerId(ByteBuf byteBuf) {
 		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
 	}
@@ -66,15 +76,27 @@ public class RouteJoinFlyweight {
 	}
 
 	public static String serviceName(ByteBuf byteBuf) {
+		return serviceName(byteBuf, null);
+	}
+
+	public static String serviceName(ByteBuf byteBuf, Utf8InternCache cache) {
 		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
-		return FlyweightUtils.decodeByteString(byteBuf, offset);
+		return FlyweightUtils.decodeByteString(byteBuf, offset, cache);
 	}
 
 	public static Tags tags(ByteBuf byteBuf) {
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf);
+	}
+
+	public static Tags tags(ByteBuf byteBuf, Utf8InternCache cache) {
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf, cache);
+	}
+
+	static int tagsOffset(ByteBuf byteBuf) {
 		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
 		// serviceName length
 		offset += decodeByteStringLength(byteBuf, offset);
-		return TagsFlyweight.decode(offset, byteBuf);
+		return offset;
 	}
 
 }
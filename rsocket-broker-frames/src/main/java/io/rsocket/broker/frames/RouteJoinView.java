@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Id;
+
+/**
+ * Lazy, read-only view over an encoded RouteJoin frame.
+ */
+public final class RouteJoinView extends BrokerFrameView {
+
+	private RouteJoinView(ByteBuf byteBuf) {
+		super(byteBuf, FrameType.ROUTE_JOIN);
+	}
+
+	public Id getBrokerId() {
+		return RouteJoinFlyweight.brokerId(content());
+	}
+
+	public Id getRouteId() {
+		return RouteJoinFlyweight.routeId(content());
+	}
+
+	public long getTimestamp() {
+		return RouteJoinFlyweight.timestamp(content());
+	}
+
+	public String getServiceName() {
+		return RouteJoinFlyweight.serviceName(content());
+	}
+
+	@Override
+	protected int tagsOffset() {
+		return RouteJoinFlyweight.tagsOffset(content());
+	}
+
+	/**
+	 * Creates a view that retains the given buffer until the view is released.
+	 * @param byteBuf an encoded RouteJoin frame.
+	 * @return the view.
+	 */
+	public static RouteJoinView from(ByteBuf byteBuf) {
+		return new RouteJoinView(byteBuf);
+	}
+
+}
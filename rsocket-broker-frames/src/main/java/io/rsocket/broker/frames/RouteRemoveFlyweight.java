@@ -34,7 +34,8 @@ public class RouteRemoveFlyweight {
 		Objects.requireNonNull(brokerId, "brokerId may not be null");
 		Objects.requireNonNull(routeId, "routeId may not be null");
 
-		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_REMOVE, flags);
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_REMOVE, flags,
+				encodedLength());
 		encodeId(byteBuf, brokerId);
 		encodeId(byteBuf, routeId);
 		byteBuf.writeLong(timestamp);
@@ -42,6 +43,14 @@ public class RouteRemoveFlyweight {
 		return byteBuf;
 	}
 
+	/**
+	 * @return the exact number of bytes {@link #encode} writes, RouteRemove frames have
+	 * a fixed length.
+	 */
+	public static int encodedLength() {
+		return FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + FlyweightUtils.ID_BYTES + Long.BYTES;
+	}
+
 	public static Id brokerId(ByteBuf byteBuf) {
 		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
 	}
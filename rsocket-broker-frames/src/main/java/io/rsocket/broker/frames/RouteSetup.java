@@ -25,6 +25,7 @@ import io.rsocket.broker.common.Tags;
 
 import static io.rsocket.broker.frames.RouteSetupFlyweight.routeId;
 import static io.rsocket.broker.frames.RouteSetupFlyweight.serviceName;
+import static io.rsocket.broker.frames.RouteSetupFlyweight.tagDictionaryCapacity;
 import static io.rsocket.broker.frames.RouteSetupFlyweight.tags;
 
 /**
@@ -36,12 +37,14 @@ public final class RouteSetup extends BrokerFrame {
 
 	private final String serviceName;
 	private final Tags tags;
+	private final int tagDictionaryCapacity;
 
-	private RouteSetup(Id routeId, String serviceName, Tags tags) {
-		super(FrameType.ROUTE_SETUP, 0);
+	private RouteSetup(Id routeId, String serviceName, Tags tags, int tagDictionaryCapacity) {
+		super(FrameType.ROUTE_SETUP, tagDictionaryCapacity > 0 ? RouteSetupFlyweight.FLAGS_D : 0);
 		this.routeId = routeId;
 		this.serviceName = serviceName;
 		this.tags = tags;
+		this.tagDictionaryCapacity = tagDictionaryCapacity;
 	}
 
 	public Id getRouteId() {
@@ -56,12 +59,21 @@ public final class RouteSetup extends BrokerFrame {
 		return this.tags;
 	}
 
+	/**
+	 * @return the capacity of the {@link TagDictionary} offered for this connection, 0
+	 * for none.
+	 */
+	public int getTagDictionaryCapacity() {
+		return this.tagDictionaryCapacity;
+	}
+
 	@Override
 	public String toString() {
 		return new StringJoiner(", ", RouteSetup.class.getSimpleName() + "[", "]")
 				.add("routeId=" + routeId)
 				.add("serviceName='" + serviceName + "'")
 				.add("tags=" + tags)
+				.add("tagDictionaryCapacity=" + tagDictionaryCapacity)
 				.toString();
 	}
 
@@ -70,8 +82,14 @@ public final class RouteSetup extends BrokerFrame {
 	}
 
 	public static RouteSetup from(ByteBuf byteBuf) {
-		return from(routeId(byteBuf), serviceName(byteBuf))
-				.with(tags(byteBuf)).build();
+		return from(byteBuf, null);
+	}
+
+	public static RouteSetup from(ByteBuf byteBuf, Utf8InternCache cache) {
+		return from(routeId(byteBuf), serviceName(byteBuf, cache))
+				.with(tags(byteBuf, cache))
+				.tagDictionary(tagDictionaryCapacity(byteBuf))
+				.build();
 	}
 
 	public static final class Builder extends Tags.Builder<Builder> {
@@ -80,6 +98,8 @@ public final class RouteSetup extends BrokerFrame {
 
 		private final String serviceName;
 
+		private int tagDictionaryCapacity;
+
 		private Builder(Id id, String serviceName) {
 			Objects.requireNonNull(id, "id may not be null");
 			Objects.requireNonNull(serviceName, "serviceName may not be null");
@@ -90,8 +110,16 @@ public final class RouteSetup extends BrokerFrame {
 			this.serviceName = serviceName;
 		}
 
+		public Builder tagDictionary(int capacity) {
+			if (capacity < 0 || capacity > TagDictionary.MAX_CAPACITY) {
+				throw new IllegalArgumentException("capacity must be between 0 and " + TagDictionary.MAX_CAPACITY);
+			}
+			this.tagDictionaryCapacity = capacity;
+			return this;
+		}
+
 		public RouteSetup build() {
-			return new RouteSetup(id, serviceName, buildTags());
+			return new RouteSetup(id, serviceName, buildTags(), tagDictionaryCapacity);
 		}
 
 	}
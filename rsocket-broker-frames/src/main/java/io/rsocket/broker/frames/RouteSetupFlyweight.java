@@ -23,6 +23,7 @@ import io.netty.buffer.ByteBufAllocator;
 import io.rsocket.broker.common.Id;
 import io.rsocket.broker.common.Tags;
 
+import static io.rsocket.broker.frames.FlyweightUtils.byteStringLength;
 import static io.rsocket.broker.frames.FlyweightUtils.decodeByteStringLength;
 import static io.rsocket.broker.frames.FlyweightUtils.decodeId;
 import static io.rsocket.broker.frames.FlyweightUtils.encodeByteString;
@@ -33,35 +34,95 @@ import static io.rsocket.broker.frames.FlyweightUtils.encodeId;
  */
 public class RouteSetupFlyweight {
 
+	/** (D)ictionary flag: a value of 1 indicates a tag dictionary capacity follows the service name */
+	public static final int FLAGS_D = 0b00_0000_0001;
+
 	public static ByteBuf encode(ByteBufAllocator allocator, Id routeId, String serviceName, Tags tags, int flags) {
+		return encode(allocator, routeId, serviceName, tags, flags, 0);
+	}
+
+	/**
+	 * Encodes a route setup offering dictionary coded tags, see {@link TagDictionary}.
+	 * @param tagDictionaryCapacity the capacity of the dictionary, 0 for none.
+	 */
+	public static ByteBuf encode(ByteBufAllocator allocator, Id routeId, String serviceName, Tags tags, int flags,
+			int tagDictionaryCapacity) {
 		Objects.requireNonNull(routeId, "routeId may not be null");
 		Objects.requireNonNull(serviceName, "serviceName may not be null");
 		Objects.requireNonNull(tags, "tags may not be null");
+		if (tagDictionaryCapacity < 0 || tagDictionaryCapacity > TagDictionary.MAX_CAPACITY) {
+			throw new IllegalArgumentException("tagDictionaryCapacity must be between 0 and " + TagDictionary.MAX_CAPACITY);
+		}
 
-		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_SETUP, flags);
+		int length = encodedLength(serviceName, tags);
+		if (tagDictionaryCapacity > 0) {
+			flags |= FLAGS_D;
+			length += Short.BYTES;
+		}
+		ByteBuf byteBuf = FrameHeaderFlyweight.encode(allocator, FrameType.ROUTE_SETUP, flags, length);
 		encodeId(byteBuf, routeId);
 
 		encodeByteString(byteBuf, serviceName);
 
+		if (tagDictionaryCapacity > 0) {
+			byteBuf.writeShort(tagDictionaryCapacity);
+		}
+
 		TagsFlyweight.encode(byteBuf, tags);
 
 		return byteBuf;
 	}
 
+	/**
+	 * @return the exact number of bytes {@link #encode} writes for the given fields
+	 * without a tag dictionary.
+	 */
+	public static int encodedLength(String serviceName, Tags tags) {
+		return FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + byteStringLength(serviceName)
+				+ TagsFlyweight.encodedLength(tags);
+	}
+
 	public static Id routeId(ByteBuf byteBuf) {
 		return decodeId(byteBuf, FrameHeaderFlyweight.BYTES);
 	}
 
 	public static String serviceName(ByteBuf byteBuf) {
+		return serviceName(byteBuf, null);
+	}
+
+	public static String serviceName(ByteBuf byteBuf, Utf8InternCache cache) {
 		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
-		return FlyweightUtils.decodeByteString(byteBuf, offset);
+		return FlyweightUtils.decodeByteString(byteBuf, offset, cache);
+	}
+
+	/**
+	 * @return the offered tag dictionary capacity, 0 when {@link #FLAGS_D} is not set.
+	 */
+	public static int tagDictionaryCapacity(ByteBuf byteBuf) {
+		if ((FrameHeaderFlyweight.flags(byteBuf) & FLAGS_D) != FLAGS_D) {
+			return 0;
+		}
+		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
+		offset += decodeByteStringLength(byteBuf, offset);
+		return byteBuf.getUnsignedShort(offset);
 	}
 
 	public static Tags tags(ByteBuf byteBuf) {
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf);
+	}
+
+	public static Tags tags(ByteBuf byteBuf, Utf8InternCache cache) {
+		return TagsFlyweight.decode(tagsOffset(byteBuf), byteBuf, cache);
+	}
+
+	static int tagsOffset(ByteBuf byteBuf) {
 		int offset = FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES;
 		// serviceName length
 		offset += decodeByteStringLength(byteBuf, offset);
-		return TagsFlyweight.decode(offset, byteBuf);
+		if ((FrameHeaderFlyweight.flags(byteBuf) & FLAGS_D) == FLAGS_D) {
+			offset += Short.BYTES;
+		}
+		return offset;
 	}
 
 }
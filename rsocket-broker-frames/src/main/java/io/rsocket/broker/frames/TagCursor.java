@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.WellKnownKey;
+
+import static io.rsocket.broker.frames.TagsFlyweight.HAS_MORE_TAGS;
+import static io.rsocket.broker.frames.TagsFlyweight.MAX_TAG_LENGTH;
+import static io.rsocket.broker.frames.TagsFlyweight.WELL_KNOWN_TAG;
+
+/**
+ * Reusable cursor over encoded tags. A single instance can be wrapped around many
+ * buffers, so walking tags allocates nothing. Not thread safe.
+ *
+ * <pre>
+ * TagCursor cursor = new TagCursor().wrap(byteBuf, offset);
+ * while (cursor.next()) {
+ *     if (cursor.wellKnownKey() == WellKnownKey.ZONE &amp;&amp; cursor.valueEquals("us-east-1a")) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ */
+public final class TagCursor {
+
+	private ByteBuf byteBuf;
+
+	private int offset;
+
+	private boolean hasMoreTags;
+
+	private WellKnownKey wellKnownKey;
+
+	private int keyOffset;
+
+	private int keyLength;
+
+	private int valueOffset;
+
+	private int valueLength;
+
+	/**
+	 * Positions the cursor before the first tag at the given offset.
+	 * @param byteBuf the buffer holding the encoded tags.
+	 * @param offset the offset of the first tag.
+	 * @return this cursor.
+	 */
+	public TagCursor wrap(ByteBuf byteBuf, int offset) {
+		this.byteBuf = byteBuf;
+		this.offset = offset;
+		// this means we've reached the end of the buffer
+		this.hasMoreTags = offset < byteBuf.writerIndex();
+		this.wellKnownKey = null;
+		this.keyOffset = -1;
+		this.keyLength = 0;
+		this.valueOffset = -1;
+		this.valueLength = 0;
+		return this;
+	}
+
+	/**
+	 * Moves to the next tag.
+	 * @return false if there are no more tags.
+	 * @throws IllegalStateException if the tags are dictionary coded.
+	 */
+	public boolean next() {
+		if (!hasMoreTags) {
+			return false;
+		}
+		int keyByte = byteBuf.getByte(offset);
+		TagsFlyweight.checkNotIndexed(keyByte);
+		offset += Byte.BYTES;
+
+		if ((keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG) {
+			wellKnownKey = WellKnownKey.fromIdentifier(keyByte & MAX_TAG_LENGTH);
+			keyOffset = -1;
+			keyLength = 0;
+		}
+		else {
+			wellKnownKey = null;
+			keyOffset = offset;
+			keyLength = keyByte & MAX_TAG_LENGTH;
+			offset += keyLength;
+		}
+
+		int valueByte = byteBuf.getByte(offset);
+		offset += Byte.BYTES;
+
+		hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+		valueOffset = offset;
+		valueLength = valueByte & MAX_TAG_LENGTH;
+		offset += valueLength;
+		return true;
+	}
+
+	/**
+	 * @return the offset after the current tag, once {@link #next()} returns false this
+	 * is the end of the tags.
+	 */
+	public int offset() {
+		return this.offset;
+	}
+
+	public ByteBuf byteBuf() {
+		return this.byteBuf;
+	}
+
+	public boolean isWellKnownKey() {
+		return this.wellKnownKey != null;
+	}
+
+	/**
+	 * @return the well known key of the current tag or null for custom keys.
+	 */
+	public WellKnownKey wellKnownKey() {
+		return this.wellKnownKey;
+	}
+
+	public int keyOffset() {
+		return this.keyOffset;
+	}
+
+	public int keyLength() {
+		return this.keyLength;
+	}
+
+	public int valueOffset() {
+		return this.valueOffset;
+	}
+
+	public int valueLength() {
+		return this.valueLength;
+	}
+
+	/**
+	 * Compares the custom key of the current tag without decoding it.
+	 */
+	public boolean keyEquals(String key) {
+		return wellKnownKey == null && FlyweightUtils.equalsUtf8(byteBuf, keyOffset, keyLength, key);
+	}
+
+	/**
+	 * Compares the value of the current tag without decoding it.
+	 */
+	public boolean valueEquals(String value) {
+		return FlyweightUtils.equalsUtf8(byteBuf, valueOffset, valueLength, value);
+	}
+
+	/**
+	 * @return the decoded custom key of the current tag or null for well known keys.
+	 */
+	public String key() {
+		if (wellKnownKey != null) {
+			return null;
+		}
+		return byteBuf.toString(keyOffset, keyLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the decoded value of the current tag.
+	 */
+	public String value() {
+		return byteBuf.toString(valueOffset, valueLength, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import io.rsocket.broker.common.Key;
+
+/**
+ * A bounded table of recently sent tags, kept per connection by both sides. Each
+ * literal tag written or read in dictionary mode is added to the table, evicting the
+ * oldest entry once full, so later frames can refer to it by index. Index 0 is the most
+ * recently added entry.
+ *
+ * <p>Both tables only stay in sync when frames are decoded in the order they were
+ * encoded, and instances are not thread safe. Frames carry the {@link #position()} of
+ * the encoder so a decoder detects a lost or reordered frame instead of resolving
+ * indexes to the wrong tags.
+ */
+public final class TagDictionary {
+
+	/** Largest capacity that can be addressed by a two byte index. */
+	public static final int MAX_CAPACITY = 1 << 14;
+
+	private final Key[] keys;
+
+	private final String[] values;
+
+	private final Map<Entry, Long> positions = new HashMap<>();
+
+	private long inserted;
+
+	public TagDictionary(int capacity) {
+		if (capacity < 1 || capacity > MAX_CAPACITY) {
+			throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+		}
+		this.keys = new Key[capacity];
+		this.values = new String[capacity];
+	}
+
+	public int capacity() {
+		return this.keys.length;
+	}
+
+	public int size() {
+		return (int) Math.min(inserted, keys.length);
+	}
+
+	/**
+	 * @return the number of tags added so far, wrapping around past
+	 * {@link Integer#MAX_VALUE}. Equal on both sides while they are in sync.
+	 */
+	public int position() {
+		return (int) inserted;
+	}
+
+	/**
+	 * @return the index of the given tag or -1 when it is not in the table.
+	 */
+	int indexOf(Key key, String value) {
+		Long position = positions.get(new Entry(key, value));
+		if (position == null) {
+			return -1;
+		}
+		return (int) (inserted - 1 - position);
+	}
+
+	void insert(Key key, String value) {
+		int slot = (int) (inserted % keys.length);
+		if (inserted >= keys.length) {
+			positions.remove(new Entry(keys[slot], values[slot]), inserted - keys.length);
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		positions.put(new Entry(key, value), inserted);
+		inserted++;
+	}
+
+	Key key(int index) {
+		return keys[slot(index)];
+	}
+
+	String value(int index) {
+		return values[slot(index)];
+	}
+
+	private int slot(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IllegalArgumentException("Unknown tag dictionary index " + index);
+		}
+		return (int) ((inserted - 1 - index) % keys.length);
+	}
+
+	private static final class Entry {
+
+		private final Key key;
+
+		private final String value;
+
+		Entry(Key key, String value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			Entry entry = (Entry) o;
+			return Objects.equals(this.key, entry.key) && Objects.equals(this.value, entry.value);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Objects.hashCode(this.key) + Objects.hashCode(this.value);
+		}
+
+	}
+
+}
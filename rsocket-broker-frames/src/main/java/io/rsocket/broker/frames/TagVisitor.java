@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.WellKnownKey;
+
+/**
+ * Callback for {@link TagsFlyweight#forEach(int, ByteBuf, TagVisitor)}. Keys and values
+ * are index ranges of UTF-8 bytes in the buffer, nothing is decoded.
+ */
+@FunctionalInterface
+public interface TagVisitor {
+
+	/**
+	 * @param byteBuf the buffer holding the encoded tags.
+	 * @param wellKnownKey the key when it is a well known key, otherwise null.
+	 * @param keyOffset the offset of a custom key, -1 for well known keys.
+	 * @param keyLength the length of a custom key, 0 for well known keys.
+	 * @param valueOffset the offset of the value.
+	 * @param valueLength the length of the value.
+	 * @return true to continue with the next tag, false to stop.
+	 */
+	boolean visit(ByteBuf byteBuf, WellKnownKey wellKnownKey, int keyOffset, int keyLength,
+			int valueOffset, int valueLength);
+
+}
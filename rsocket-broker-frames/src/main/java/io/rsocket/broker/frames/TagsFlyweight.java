@@ -17,8 +17,6 @@
 package io.rsocket.broker.frames;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Iterator;
-import java.util.Map;
 import java.util.Objects;
 
 import io.netty.buffer.ByteBuf;
@@ -28,58 +26,143 @@ import io.rsocket.broker.common.Tags;
 import io.rsocket.broker.common.WellKnownKey;
 
 public class TagsFlyweight {
-	private static final int WELL_KNOWN_TAG = 0x80;
-	private static final int HAS_MORE_TAGS = 0x80;
-	private static final int MAX_TAG_LENGTH = 0x7F;
+	static final int WELL_KNOWN_TAG = 0x80;
+	static final int HAS_MORE_TAGS = 0x80;
+	static final int MAX_TAG_LENGTH = 0x7F;
+	/** Key byte of a tag referring to a {@link TagDictionary} entry. */
+	static final int INDEXED_TAG = 0x00;
+	/** Set on the first index byte when a second, low order, index byte follows. */
+	static final int TWO_BYTE_INDEX = 0x40;
+	static final int MAX_ONE_BYTE_INDEX = 0x3F;
+
+	private static final long FNV_64_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_64_PRIME = 0x100000001b3L;
 
 	public static ByteBuf encode(ByteBuf byteBuf, Tags tags) {
 		Objects.requireNonNull(byteBuf, "byteBuf may not be null");
+		return encodeTags(byteBuf, tags, null);
+	}
 
-		Iterator<Map.Entry<Key, String>> it = tags.asMap().entrySet().iterator();
+	/**
+	 * Encodes tags against a connection scoped dictionary. Tags already in the
+	 * dictionary are written as an index, others are written as in
+	 * {@link #encode(ByteBuf, Tags)} and added to the dictionary. The result is never
+	 * longer than {@link #encodedLength(Tags)}. The frame carrying the tags must also
+	 * carry the {@link TagDictionary#position()} from before this call, for the decoder
+	 * to check.
+	 * @param dictionary the dictionary of the connection, plain encoding when null.
+	 */
+	public static ByteBuf encode(ByteBuf byteBuf, Tags tags, TagDictionary dictionary) {
+		Objects.requireNonNull(byteBuf, "byteBuf may not be null");
+		return encodeTags(byteBuf, tags, dictionary);
+	}
 
-		while (it.hasNext()) {
-			Map.Entry<Key, String> entry = it.next();
-			Key key = entry.getKey();
-			if (key.getWellKnownKey() != null) {
-				byte id = key.getWellKnownKey().getIdentifier();
-				int keyLength = WELL_KNOWN_TAG | id;
-				byteBuf.writeByte(keyLength);
+	private static ByteBuf encodeTags(ByteBuf byteBuf, Tags tags, TagDictionary dictionary) {
+		// a tag is written once the next encodable one is known, so that the has more
+		// tags flag is never set on the last tag written
+		int pending = -1;
+		int pendingKeyLength = 0;
+		int pendingValueLength = 0;
+		for (int i = 0; i < tags.size(); i++) {
+			int keyLength = keyLength(tags.keyAt(i));
+			int valueLength = valueLength(tags.valueAt(i));
+			if (keyLength < 0 || valueLength < 0) {
+				continue;
 			}
-			else {
-				String keyString = key.getKey();
-				if (keyString == null) {
-					continue;
-				}
-				int keyLength = ByteBufUtil.utf8Bytes(keyString);
-				if (keyLength == 0 || keyLength > MAX_TAG_LENGTH) {
-					continue;
-				}
-				byteBuf.writeByte(keyLength);
-				ByteBufUtil.reserveAndWriteUtf8(byteBuf, keyString, keyLength);
+			if (pending >= 0) {
+				encodeTag(byteBuf, tags, pending, pendingKeyLength, pendingValueLength, HAS_MORE_TAGS, dictionary);
 			}
+			pending = i;
+			pendingKeyLength = keyLength;
+			pendingValueLength = valueLength;
+		}
+		if (pending >= 0) {
+			encodeTag(byteBuf, tags, pending, pendingKeyLength, pendingValueLength, 0, dictionary);
+		}
 
-			boolean hasMoreTags = it.hasNext();
+		return byteBuf;
+	}
 
-			String value = entry.getValue();
-			int valueLength = ByteBufUtil.utf8Bytes(value);
-			if (valueLength == 0 || valueLength > MAX_TAG_LENGTH) {
-				continue;
+	private static void encodeTag(ByteBuf byteBuf, Tags tags, int tag, int keyLength, int valueLength,
+			int moreTagsFlag, TagDictionary dictionary) {
+		Key key = tags.keyAt(tag);
+		String value = tags.valueAt(tag);
+		if (dictionary != null) {
+			int index = dictionary.indexOf(key, value);
+			if (index > MAX_ONE_BYTE_INDEX) {
+				byteBuf.writeByte(INDEXED_TAG);
+				byteBuf.writeByte(moreTagsFlag | TWO_BYTE_INDEX | (index >>> Byte.SIZE));
+				byteBuf.writeByte(index & 0xFF);
+				return;
 			}
-			int valueByte;
-			if (hasMoreTags) {
-				valueByte = HAS_MORE_TAGS | valueLength;
+			if (index >= 0) {
+				byteBuf.writeByte(INDEXED_TAG);
+				byteBuf.writeByte(moreTagsFlag | index);
+				return;
 			}
-			else {
-				valueByte = valueLength;
-			}
-			byteBuf.writeByte(valueByte);
-			ByteBufUtil.reserveAndWriteUtf8(byteBuf, value, valueLength);
+			dictionary.insert(key, value);
+		}
+		if (key.getWellKnownKey() != null) {
+			byteBuf.writeByte(WELL_KNOWN_TAG | key.getWellKnownKey().getIdentifier());
 		}
+		else {
+			byteBuf.writeByte(keyLength);
+			ByteBufUtil.reserveAndWriteUtf8(byteBuf, key.getKey(), keyLength);
+		}
+		byteBuf.writeByte(moreTagsFlag | valueLength);
+		ByteBufUtil.reserveAndWriteUtf8(byteBuf, value, valueLength);
+	}
 
-		return byteBuf;
+	/**
+	 * @return the UTF-8 length of a custom key, 0 for a well known key or -1 for a key
+	 * the encoders skip: empty or longer than {@link #MAX_TAG_LENGTH} bytes.
+	 */
+	private static int keyLength(Key key) {
+		if (key.getWellKnownKey() != null) {
+			return 0;
+		}
+		String keyString = key.getKey();
+		if (keyString == null) {
+			return -1;
+		}
+		int keyLength = ByteBufUtil.utf8Bytes(keyString);
+		return keyLength == 0 || keyLength > MAX_TAG_LENGTH ? -1 : keyLength;
+	}
+
+	/**
+	 * @return the UTF-8 length of a value or -1 for a value the encoders skip: empty or
+	 * longer than {@link #MAX_TAG_LENGTH} bytes.
+	 */
+	private static int valueLength(String value) {
+		int valueLength = ByteBufUtil.utf8Bytes(value);
+		return valueLength == 0 || valueLength > MAX_TAG_LENGTH ? -1 : valueLength;
+	}
+
+	/**
+	 * Computes the number of bytes {@link #encode(ByteBuf, Tags)} writes for the given
+	 * tags, skipping the same invalid entries.
+	 */
+	public static int encodedLength(Tags tags) {
+		int length = 0;
+		for (int i = 0; i < tags.size(); i++) {
+			int keyLength = keyLength(tags.keyAt(i));
+			int valueLength = valueLength(tags.valueAt(i));
+			if (keyLength >= 0 && valueLength >= 0) {
+				length += Byte.BYTES + keyLength + Byte.BYTES + valueLength;
+			}
+		}
+		return length;
 	}
 
 	public static Tags decode(int offset, ByteBuf byteBuf) {
+		return decode(offset, byteBuf, null);
+	}
+
+	/**
+	 * Decodes tags, resolving keys and values through the given cache.
+	 * @param cache the cache of canonical instances, may be null.
+	 */
+	public static Tags decode(int offset, ByteBuf byteBuf, Utf8InternCache cache) {
 
 		Tags.Builder builder = Tags.builder();
 
@@ -93,6 +176,7 @@ public class TagsFlyweight {
 		while (hasMoreTags) {
 			int keyByte = byteBuf.getByte(offset);
 			offset += Byte.BYTES;
+			checkNotIndexed(keyByte);
 
 			boolean isWellKnownTag = (keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG;
 
@@ -103,6 +187,10 @@ public class TagsFlyweight {
 				WellKnownKey wellKnownKey = WellKnownKey.fromIdentifier(keyLengthOrId);
 				key = Key.of(wellKnownKey);
 			}
+			else if (cache != null) {
+				key = cache.internKey(byteBuf, offset, keyLengthOrId);
+				offset += keyLengthOrId;
+			}
 			else {
 				String keyString = byteBuf.toString(offset, keyLengthOrId, StandardCharsets.UTF_8);
 				offset += keyLengthOrId;
@@ -114,8 +202,8 @@ public class TagsFlyweight {
 
 			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
 			int valueLength = valueByte & MAX_TAG_LENGTH;
-			String value = byteBuf.toString(offset, valueLength,
-					StandardCharsets.UTF_8);
+			String value = cache != null ? cache.intern(byteBuf, offset, valueLength)
+					: byteBuf.toString(offset, valueLength, StandardCharsets.UTF_8);
 			offset += valueLength;
 
 			builder.with(key, value);
@@ -124,6 +212,220 @@ public class TagsFlyweight {
 		return builder.buildTags();
 	}
 
+	/**
+	 * Decodes tags written by {@link #encode(ByteBuf, Tags, TagDictionary)}, resolving
+	 * indexes and adding literal tags to the dictionary in the same order the encoder
+	 * did. Frames must therefore be decoded in the order they were encoded.
+	 * @param dictionary the dictionary of the connection, plain decoding when null.
+	 * @param position the {@link TagDictionary#position()} of the encoder before it
+	 * encoded the tags, sent along with them.
+	 * @param cache the cache of canonical instances, may be null.
+	 * @throws IllegalStateException if the dictionary is not at the given position, a
+	 * frame encoded against it was lost or decoded out of order.
+	 */
+	public static Tags decode(int offset, ByteBuf byteBuf, TagDictionary dictionary, int position,
+			Utf8InternCache cache) {
+		if (dictionary == null) {
+			return decode(offset, byteBuf, cache);
+		}
+		if (dictionary.position() != position) {
+			throw new IllegalStateException("Tag dictionary out of sync, tags were encoded at position " + position
+					+ " but the dictionary is at " + dictionary.position());
+		}
+
+		Tags.Builder builder = Tags.builder();
+
+		// this means we've reached the end of the buffer
+		if (offset >= byteBuf.writerIndex()) {
+			return builder.buildTags();
+		}
+
+		boolean hasMoreTags = true;
+
+		while (hasMoreTags) {
+			int keyByte = byteBuf.getByte(offset) & 0xFF;
+			offset += Byte.BYTES;
+
+			if (keyByte == INDEXED_TAG) {
+				int indexByte = byteBuf.getByte(offset) & 0xFF;
+				offset += Byte.BYTES;
+				hasMoreTags = (indexByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+				int index = indexByte & MAX_ONE_BYTE_INDEX;
+				if ((indexByte & TWO_BYTE_INDEX) == TWO_BYTE_INDEX) {
+					index = (index << Byte.SIZE) | (byteBuf.getByte(offset) & 0xFF);
+					offset += Byte.BYTES;
+				}
+				builder.with(dictionary.key(index), dictionary.value(index));
+				continue;
+			}
+
+			int keyLengthOrId = keyByte & MAX_TAG_LENGTH;
+
+			Key key;
+			if ((keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG) {
+				key = Key.of(WellKnownKey.fromIdentifier(keyLengthOrId));
+			}
+			else if (cache != null) {
+				key = cache.internKey(byteBuf, offset, keyLengthOrId);
+				offset += keyLengthOrId;
+			}
+			else {
+				key = Key.of(byteBuf.toString(offset, keyLengthOrId, StandardCharsets.UTF_8));
+				offset += keyLengthOrId;
+			}
+
+			int valueByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+			int valueLength = valueByte & MAX_TAG_LENGTH;
+			String value = cache != null ? cache.intern(byteBuf, offset, valueLength)
+					: byteBuf.toString(offset, valueLength, StandardCharsets.UTF_8);
+			offset += valueLength;
+
+			builder.with(key, value);
+			dictionary.insert(key, value);
+		}
+
+		return builder.buildTags();
+	}
+
+	/**
+	 * Visits encoded tags in place without creating any objects. Keys and values are
+	 * passed as index ranges into the buffer.
+	 * @param offset the offset of the first tag.
+	 * @param byteBuf the buffer holding the encoded tags.
+	 * @param visitor called for each tag until it returns false.
+	 * @return the offset after the last visited tag.
+	 * @throws IllegalStateException if the tags are dictionary coded.
+	 */
+	public static int forEach(int offset, ByteBuf byteBuf, TagVisitor visitor) {
+		// this means we've reached the end of the buffer
+		if (offset >= byteBuf.writerIndex()) {
+			return offset;
+		}
+
+		boolean hasMoreTags = true;
+
+		while (hasMoreTags) {
+			int keyByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+			checkNotIndexed(keyByte);
+
+			WellKnownKey wellKnownKey = null;
+			int keyOffset = -1;
+			int keyLength = 0;
+			if ((keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG) {
+				wellKnownKey = WellKnownKey.fromIdentifier(keyByte & MAX_TAG_LENGTH);
+			}
+			else {
+				keyOffset = offset;
+				keyLength = keyByte & MAX_TAG_LENGTH;
+				offset += keyLength;
+			}
+
+			int valueByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+			int valueLength = valueByte & MAX_TAG_LENGTH;
+			int valueOffset = offset;
+			offset += valueLength;
+
+			if (!visitor.visit(byteBuf, wellKnownKey, keyOffset, keyLength, valueOffset, valueLength)) {
+				break;
+			}
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Scans encoded tags in place for a well known key.
+	 * @return the offset of the value length byte of the matching tag or -1 if absent.
+	 */
+	static int valueOffset(int offset, ByteBuf byteBuf, WellKnownKey key) {
+		// this means we've reached the end of the buffer
+		if (offset >= byteBuf.writerIndex()) {
+			return -1;
+		}
+
+		int wellKnownKeyByte = (WELL_KNOWN_TAG | key.getIdentifier()) & 0xFF;
+		boolean hasMoreTags = true;
+
+		while (hasMoreTags) {
+			int keyByte = byteBuf.getByte(offset) & 0xFF;
+			offset += Byte.BYTES;
+			checkNotIndexed(keyByte);
+
+			if ((keyByte & WELL_KNOWN_TAG) != WELL_KNOWN_TAG) {
+				offset += keyByte & MAX_TAG_LENGTH;
+			}
+			else if (keyByte == wellKnownKeyByte) {
+				return offset;
+			}
+
+			int valueByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+			offset += valueByte & MAX_TAG_LENGTH;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Scans encoded tags in place for a custom key.
+	 * @return the offset of the value length byte of the matching tag or -1 if absent.
+	 */
+	static int valueOffset(int offset, ByteBuf byteBuf, String key) {
+		// this means we've reached the end of the buffer
+		if (offset >= byteBuf.writerIndex()) {
+			return -1;
+		}
+
+		boolean hasMoreTags = true;
+
+		while (hasMoreTags) {
+			int keyByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+			checkNotIndexed(keyByte);
+
+			if ((keyByte & WELL_KNOWN_TAG) != WELL_KNOWN_TAG) {
+				int keyLength = keyByte & MAX_TAG_LENGTH;
+				boolean matches = FlyweightUtils.equalsUtf8(byteBuf, offset, keyLength, key);
+				offset += keyLength;
+				if (matches) {
+					return offset;
+				}
+			}
+
+			int valueByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+			offset += valueByte & MAX_TAG_LENGTH;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Literal keys are never empty, so a key byte of {@link #INDEXED_TAG} can only be a
+	 * dictionary reference, which needs the {@link TagDictionary} of the connection.
+	 */
+	static void checkNotIndexed(int keyByte) {
+		if (keyByte == INDEXED_TAG) {
+			throw new IllegalStateException("Tags are dictionary coded, decode them with a TagDictionary");
+		}
+	}
+
+	static String decodeValue(int valueOffset, ByteBuf byteBuf) {
+		int valueLength = byteBuf.getByte(valueOffset) & MAX_TAG_LENGTH;
+		return byteBuf.toString(valueOffset + Byte.BYTES, valueLength, StandardCharsets.UTF_8);
+	}
+
 	// same algorithm as decode except no object creation, length is final offset minus original.
 	public static int length(int offset, ByteBuf byteBuf) {
 
@@ -140,6 +442,16 @@ public class TagsFlyweight {
 			int keyByte = byteBuf.getByte(offset);
 			offset += Byte.BYTES;
 
+			if (keyByte == INDEXED_TAG) {
+				int indexByte = byteBuf.getByte(offset);
+				offset += Byte.BYTES;
+				if ((indexByte & TWO_BYTE_INDEX) == TWO_BYTE_INDEX) {
+					offset += Byte.BYTES;
+				}
+				hasMoreTags = (indexByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+				continue;
+			}
+
 			boolean isWellKnownTag = (keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG;
 
 			if (!isWellKnownTag) {
@@ -157,4 +469,93 @@ public class TagsFlyweight {
 
 		return offset - originalOffset;
 	}
+
+	/**
+	 * @return the fingerprint written into canonical Address frames for the given tags,
+	 * the hash of their encoded bytes computed without encoding them.
+	 */
+	public static long fingerprint(Tags tags) {
+		long hash = FNV_64_OFFSET_BASIS;
+		// same lookahead as the encoders for the has more tags flag
+		int pending = -1;
+		int pendingKeyLength = 0;
+		int pendingValueLength = 0;
+		for (int i = 0; i < tags.size(); i++) {
+			int keyLength = keyLength(tags.keyAt(i));
+			int valueLength = valueLength(tags.valueAt(i));
+			if (keyLength < 0 || valueLength < 0) {
+				continue;
+			}
+			if (pending >= 0) {
+				hash = fnvTag(hash, tags, pending, pendingKeyLength, pendingValueLength, HAS_MORE_TAGS);
+			}
+			pending = i;
+			pendingKeyLength = keyLength;
+			pendingValueLength = valueLength;
+		}
+		if (pending >= 0) {
+			hash = fnvTag(hash, tags, pending, pendingKeyLength, pendingValueLength, 0);
+		}
+		return hash;
+	}
+
+	private static long fnvTag(long hash, Tags tags, int tag, int keyLength, int valueLength, int moreTagsFlag) {
+		Key key = tags.keyAt(tag);
+		if (key.getWellKnownKey() != null) {
+			hash = fnv(hash, WELL_KNOWN_TAG | key.getWellKnownKey().getIdentifier());
+		}
+		else {
+			hash = fnv(hash, keyLength);
+			hash = fnvUtf8(hash, key.getKey());
+		}
+		hash = fnv(hash, moreTagsFlag | valueLength);
+		return fnvUtf8(hash, tags.valueAt(tag));
+	}
+
+	// hashes the bytes ByteBufUtil.writeUtf8 writes, '?' for unpaired surrogates
+	private static long fnvUtf8(long hash, CharSequence s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				hash = fnv(hash, c);
+			}
+			else if (c < 0x800) {
+				hash = fnv(hash, 0xC0 | (c >> 6));
+				hash = fnv(hash, 0x80 | (c & 0x3F));
+			}
+			else if (!Character.isSurrogate(c)) {
+				hash = fnv(hash, 0xE0 | (c >> 12));
+				hash = fnv(hash, 0x80 | ((c >> 6) & 0x3F));
+				hash = fnv(hash, 0x80 | (c & 0x3F));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < s.length()
+					&& Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				hash = fnv(hash, 0xF0 | (codePoint >> 18));
+				hash = fnv(hash, 0x80 | ((codePoint >> 12) & 0x3F));
+				hash = fnv(hash, 0x80 | ((codePoint >> 6) & 0x3F));
+				hash = fnv(hash, 0x80 | (codePoint & 0x3F));
+			}
+			else {
+				hash = fnv(hash, '?');
+			}
+		}
+		return hash;
+	}
+
+	private static long fnv(long hash, int b) {
+		return (hash ^ (b & 0xFF)) * FNV_64_PRIME;
+	}
+
+	/**
+	 * @return the 64-bit FNV-1a hash of the given bytes.
+	 */
+	public static long fingerprint(ByteBuf byteBuf, int offset, int length) {
+		long hash = FNV_64_OFFSET_BASIS;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash ^= byteBuf.getByte(i) & 0xFF;
+			hash *= FNV_64_PRIME;
+		}
+		return hash;
+	}
 }
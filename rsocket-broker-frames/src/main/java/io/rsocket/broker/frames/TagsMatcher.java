@@ -0,0 +1,388 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Key;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+
+import static io.rsocket.broker.frames.TagsFlyweight.HAS_MORE_TAGS;
+import static io.rsocket.broker.frames.TagsFlyweight.INDEXED_TAG;
+import static io.rsocket.broker.frames.TagsFlyweight.MAX_TAG_LENGTH;
+import static io.rsocket.broker.frames.TagsFlyweight.WELL_KNOWN_TAG;
+
+/**
+ * A compiled predicate over tags. Each key of the matcher allows one or more values, a
+ * candidate matches when it has every key with one of the allowed values. An exact
+ * matcher also requires the candidate to have no other keys.
+ *
+ * Well known keys are checked against a mask of the keys present before any value is
+ * compared, values of {@link Tags} are compared by their precomputed hash first and
+ * encoded values by their UTF-8 length first. Matching never allocates, instances are
+ * immutable and may be shared between threads.
+ */
+public final class TagsMatcher {
+
+	// values() copies the array on each call
+	private static final WellKnownKey[] WELL_KNOWN_KEYS = WellKnownKey.values();
+
+	private static final TagsMatcher ANY = new TagsMatcher(false, new LinkedHashMap<>());
+
+	private final boolean exact;
+
+	// bit per WellKnownKey ordinal
+	private final long wellKnownMask;
+
+	// by ordinal, null when the key is not part of the matcher
+	private final Values[] wellKnownValues;
+
+	private final String[] customKeys;
+
+	private final byte[][] customKeyBytes;
+
+	private final Values[] customValues;
+
+	private final int size;
+
+	private TagsMatcher(boolean exact, Map<Key, Set<String>> constraints) {
+		this.exact = exact;
+		long mask = 0;
+		Values[] wellKnown = new Values[WELL_KNOWN_KEYS.length];
+		List<String> keys = new ArrayList<>();
+		List<Values> values = new ArrayList<>();
+		for (Map.Entry<Key, Set<String>> entry : constraints.entrySet()) {
+			Key key = entry.getKey();
+			Values allowed = new Values(entry.getValue());
+			if (key.getWellKnownKey() != null) {
+				mask |= 1L << key.getWellKnownKey().ordinal();
+				wellKnown[key.getWellKnownKey().ordinal()] = allowed;
+			}
+			else {
+				keys.add(key.getKey());
+				values.add(allowed);
+			}
+		}
+		this.wellKnownMask = mask;
+		this.wellKnownValues = wellKnown;
+		this.customKeys = keys.toArray(new String[0]);
+		this.customKeyBytes = new byte[customKeys.length][];
+		for (int i = 0; i < customKeys.length; i++) {
+			this.customKeyBytes[i] = customKeys[i].getBytes(StandardCharsets.UTF_8);
+		}
+		this.customValues = values.toArray(new Values[0]);
+		this.size = Long.bitCount(mask) + customKeys.length;
+	}
+
+	/**
+	 * @return a matcher for tags equal to the given tags.
+	 */
+	public static TagsMatcher exact(Tags tags) {
+		return builder().with(tags).exact().build();
+	}
+
+	/**
+	 * @return a matcher for tags that contain all of the given tags.
+	 */
+	public static TagsMatcher subset(Tags tags) {
+		return builder().with(tags).build();
+	}
+
+	/**
+	 * @return a matcher for tags that contain all of the tags of the address.
+	 */
+	public static TagsMatcher subset(Address address) {
+		return subset(address.getTags());
+	}
+
+	/**
+	 * @return a matcher that matches any tags.
+	 */
+	public static TagsMatcher any() {
+		return ANY;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public boolean isExact() {
+		return this.exact;
+	}
+
+	public boolean matches(Tags tags) {
+		long mask = tags.wellKnownMask();
+		if (exact) {
+			if (mask != wellKnownMask || tags.size() != size) {
+				return false;
+			}
+		}
+		else if ((mask & wellKnownMask) != wellKnownMask) {
+			return false;
+		}
+		for (long remaining = wellKnownMask; remaining != 0; remaining &= remaining - 1) {
+			int ordinal = Long.numberOfTrailingZeros(remaining);
+			if (!wellKnownValues[ordinal].contains(tags.get(WELL_KNOWN_KEYS[ordinal]))) {
+				return false;
+			}
+		}
+		for (int i = 0; i < customKeys.length; i++) {
+			String value = tags.get(customKeys[i]);
+			if (value == null || !customValues[i].contains(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Matches encoded tags in place.
+	 * @param offset the offset of the first tag.
+	 * @param byteBuf the buffer holding the encoded tags.
+	 * @throws IllegalStateException if the tags are dictionary coded.
+	 */
+	public boolean matches(int offset, ByteBuf byteBuf) {
+		long seenWellKnown = 0;
+		int seenCustom = 0;
+		int count = 0;
+
+		// this means we've reached the end of the buffer
+		boolean hasMoreTags = offset < byteBuf.writerIndex();
+
+		while (hasMoreTags) {
+			int keyByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			if (keyByte == INDEXED_TAG) {
+				throw new IllegalStateException("Dictionary coded tags can not be matched in place");
+			}
+
+			Values allowed = null;
+			boolean known;
+			if ((keyByte & WELL_KNOWN_TAG) == WELL_KNOWN_TAG) {
+				int ordinal = WellKnownKey.fromIdentifier(keyByte & MAX_TAG_LENGTH).ordinal();
+				known = (wellKnownMask & (1L << ordinal)) != 0;
+				if (known) {
+					allowed = wellKnownValues[ordinal];
+					seenWellKnown |= 1L << ordinal;
+				}
+			}
+			else {
+				int keyLength = keyByte & MAX_TAG_LENGTH;
+				int index = customIndex(byteBuf, offset, keyLength);
+				known = index >= 0;
+				if (known) {
+					allowed = customValues[index];
+					seenCustom++;
+				}
+				offset += keyLength;
+			}
+
+			int valueByte = byteBuf.getByte(offset);
+			offset += Byte.BYTES;
+
+			hasMoreTags = (valueByte & HAS_MORE_TAGS) == HAS_MORE_TAGS;
+			int valueLength = valueByte & MAX_TAG_LENGTH;
+
+			if (known) {
+				if (!allowed.contains(byteBuf, offset, valueLength)) {
+					return false;
+				}
+			}
+			else if (exact) {
+				return false;
+			}
+			offset += valueLength;
+			count++;
+		}
+
+		return seenWellKnown == wellKnownMask && seenCustom == customKeys.length
+				&& (!exact || count == size);
+	}
+
+	/**
+	 * Matches the tags of an encoded {@link Address} frame in place.
+	 * @throws IllegalStateException if the tags are dictionary coded.
+	 */
+	public boolean matchesAddress(ByteBuf addressFrame) {
+		if ((FrameHeaderFlyweight.flags(addressFrame) & AddressFlyweight.FLAGS_D) == AddressFlyweight.FLAGS_D) {
+			throw new IllegalStateException("Dictionary coded tags can not be matched in place");
+		}
+		return matches(AddressFlyweight.tagsOffset(addressFrame), addressFrame);
+	}
+
+	private int customIndex(ByteBuf byteBuf, int keyOffset, int keyLength) {
+		for (int i = 0; i < customKeyBytes.length; i++) {
+			if (bytesEqual(customKeyBytes[i], byteBuf, keyOffset, keyLength)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean bytesEqual(byte[] bytes, ByteBuf byteBuf, int offset, int length) {
+		if (bytes.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (bytes[i] != byteBuf.getByte(offset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("TagsMatcher{exact=").append(exact);
+		for (long remaining = wellKnownMask; remaining != 0; remaining &= remaining - 1) {
+			int ordinal = Long.numberOfTrailingZeros(remaining);
+			builder.append(", ").append(WELL_KNOWN_KEYS[ordinal]).append('=')
+					.append(Arrays.toString(wellKnownValues[ordinal].values));
+		}
+		for (int i = 0; i < customKeys.length; i++) {
+			builder.append(", ").append(customKeys[i]).append('=')
+					.append(Arrays.toString(customValues[i].values));
+		}
+		return builder.append('}').toString();
+	}
+
+	/**
+	 * The allowed values of a key with their hashes and UTF-8 bytes.
+	 */
+	private static final class Values {
+
+		private final String[] values;
+
+		private final int[] hashes;
+
+		private final byte[][] bytes;
+
+		private Values(Set<String> values) {
+			this.values = values.toArray(new String[0]);
+			this.hashes = new int[this.values.length];
+			this.bytes = new byte[this.values.length][];
+			for (int i = 0; i < this.values.length; i++) {
+				this.hashes[i] = this.values[i].hashCode();
+				this.bytes[i] = this.values[i].getBytes(StandardCharsets.UTF_8);
+			}
+		}
+
+		private boolean contains(String value) {
+			if (value == null) {
+				return false;
+			}
+			int hash = value.hashCode();
+			for (int i = 0; i < values.length; i++) {
+				if (hashes[i] == hash && values[i].equals(value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean contains(ByteBuf byteBuf, int offset, int length) {
+			for (byte[] value : bytes) {
+				if (bytesEqual(value, byteBuf, offset, length)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	public static final class Builder {
+
+		private final Map<Key, Set<String>> constraints = new LinkedHashMap<>();
+
+		private boolean exact;
+
+		private Builder() {
+		}
+
+		/**
+		 * Requires the key with any one of the given values.
+		 */
+		public Builder with(WellKnownKey key, String... values) {
+			return with(Key.of(key), values);
+		}
+
+		/**
+		 * Requires the key with any one of the given values.
+		 */
+		public Builder with(String key, String... values) {
+			return with(Key.of(key), values);
+		}
+
+		/**
+		 * Requires the key with any one of the given values.
+		 */
+		public Builder with(Key key, String... values) {
+			Objects.requireNonNull(key, "key may not be null");
+			if (values.length == 0) {
+				throw new IllegalArgumentException("at least one value is required for " + key);
+			}
+			Set<String> allowed = constraints.computeIfAbsent(canonical(key), k -> new LinkedHashSet<>());
+			for (String value : values) {
+				allowed.add(Objects.requireNonNull(value, "value may not be null"));
+			}
+			return this;
+		}
+
+		/**
+		 * Requires every tag of the given tags.
+		 */
+		public Builder with(Tags tags) {
+			for (int i = 0; i < tags.size(); i++) {
+				with(tags.keyAt(i), tags.valueAt(i));
+			}
+			return this;
+		}
+
+		/**
+		 * Also requires the candidate to have no keys besides the ones of this matcher.
+		 */
+		public Builder exact() {
+			this.exact = true;
+			return this;
+		}
+
+		public TagsMatcher build() {
+			return new TagsMatcher(exact, constraints);
+		}
+
+		private static Key canonical(Key key) {
+			if (key.getWellKnownKey() != null) {
+				return Key.of(key.getWellKnownKey());
+			}
+			return Key.of(key.getKey());
+		}
+
+	}
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+import io.rsocket.broker.common.Key;
+
+/**
+ * Bounded cache of decoded UTF-8 byte sequences, so repeated tag keys, values and
+ * service names decode to the same {@link String} and {@link Key} instances.
+ * Entries are found by a hash of the raw bytes in a 4-way set associative table and
+ * evicted with the CLOCK algorithm.
+ *
+ * A cache may be shared across connections. Lookups are lock free, racing writers
+ * can only cause a cache miss, never a wrong value.
+ */
+public final class Utf8InternCache {
+
+	/** Default number of entries. */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static final int WAYS = 4;
+
+	private final Entry[] entries;
+
+	private final byte[] hands;
+
+	private final int setMask;
+
+	public Utf8InternCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity maximum number of entries, rounded up to a power of two.
+	 */
+	public Utf8InternCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be > 0");
+		}
+		int sets = Math.max(1, Integer.highestOneBit(Math.max(capacity - 1, 1) << 1) / WAYS);
+		this.entries = new Entry[sets * WAYS];
+		this.hands = new byte[sets];
+		this.setMask = sets - 1;
+	}
+
+	public int capacity() {
+		return this.entries.length;
+	}
+
+	/**
+	 * @return the canonical {@link String} for the UTF-8 bytes at the given range.
+	 */
+	public String intern(ByteBuf byteBuf, int offset, int length) {
+		if (length == 0) {
+			return "";
+		}
+		return entry(byteBuf, offset, length).value;
+	}
+
+	/**
+	 * @return the canonical {@link Key} for the custom key bytes at the given range.
+	 */
+	public Key internKey(ByteBuf byteBuf, int offset, int length) {
+		Entry entry = entry(byteBuf, offset, length);
+		Key key = entry.key;
+		if (key == null) {
+			key = Key.of(entry.value);
+			entry.key = key;
+		}
+		return key;
+	}
+
+	private Entry entry(ByteBuf byteBuf, int offset, int length) {
+		int hash = hash(byteBuf, offset, length);
+		int set = index(hash);
+		int base = set * WAYS;
+		for (int i = 0; i < WAYS; i++) {
+			Entry entry = entries[base + i];
+			if (entry != null && entry.hash == hash && entry.matches(byteBuf, offset, length)) {
+				entry.referenced = true;
+				return entry;
+			}
+		}
+
+		byte[] bytes = new byte[length];
+		byteBuf.getBytes(offset, bytes);
+		Entry entry = new Entry(hash, bytes, new String(bytes, StandardCharsets.UTF_8));
+		entries[base + victim(set, base)] = entry;
+		return entry;
+	}
+
+	// CLOCK: skip and clear recently referenced entries, evict the first that is not.
+	private int victim(int set, int base) {
+		int hand = hands[set];
+		for (int i = 0; i < WAYS * 2; i++) {
+			Entry entry = entries[base + hand];
+			if (entry == null || !entry.referenced) {
+				break;
+			}
+			entry.referenced = false;
+			hand = (hand + 1) % WAYS;
+		}
+		hands[set] = (byte) ((hand + 1) % WAYS);
+		return hand;
+	}
+
+	private int index(int hash) {
+		int h = hash * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & setMask;
+	}
+
+	private static int hash(ByteBuf byteBuf, int offset, int length) {
+		// FNV-1a
+		int hash = 0x811C9DC5;
+		for (int i = 0; i < length; i++) {
+			hash ^= byteBuf.getByte(offset + i) & 0xFF;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+
+	private static final class Entry {
+
+		private final int hash;
+
+		private final byte[] bytes;
+
+		private final String value;
+
+		private Key key;
+
+		private boolean referenced;
+
+		private Entry(int hash, byte[] bytes, String value) {
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = value;
+		}
+
+		private boolean matches(ByteBuf byteBuf, int offset, int length) {
+			if (bytes.length != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] != byteBuf.getByte(offset + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+	}
+
+}
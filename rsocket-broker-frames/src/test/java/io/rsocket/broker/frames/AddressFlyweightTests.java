@@ -24,6 +24,8 @@ import io.rsocket.broker.common.WellKnownKey;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
 
 class AddressFlyweightTests {
 
@@ -35,7 +37,24 @@ class AddressFlyweightTests {
 				.with(WellKnownKey.MINOR_VERSION, "0")
 				.with("mycustomtag", "mycustomtagvalue")
 				.buildTags();
-		assertAddress(metadata, tags, 0b01_0100_0000);
+		assertAddress(metadata, tags, 0b01_0100_0000 | AddressFlyweight.FLAGS_L);
+	}
+
+	@Test
+	void testMetadataNotWrittenWithoutLengthFlag() {
+		Tags metadata = Tags.builder().with("mycustommetadata", "mycustommetadatavalue")
+				.buildTags();
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+		ByteBuf encoded = AddressFlyweight
+				.encode(ByteBufAllocator.DEFAULT, Id.random(), metadata, tags, AddressFlyweight.FLAGS_U);
+
+		assertThat(FrameHeaderFlyweight.flags(encoded)).isEqualTo(AddressFlyweight.FLAGS_U);
+		assertThat(encoded.readableBytes()).isEqualTo(AddressFlyweight.encodedLength(metadata, tags))
+				.isEqualTo(FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + TagsFlyweight.encodedLength(tags));
+		assertThat(AddressFlyweight.metadata(encoded)).isEqualTo(Tags.empty());
+		assertThat(AddressFlyweight.tags(encoded)).isEqualTo(tags);
+		encoded.release();
 	}
 
 	@Test
@@ -48,16 +67,92 @@ class AddressFlyweightTests {
 		assertAddress(metadata, tags, 0b00_1000_0000);
 	}
 
+	@Test
+	void testEncodeDecodeLengthPrefixedEmptyMetadata() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+		assertAddress(Tags.empty(), tags, 0b00_1000_0000 | AddressFlyweight.FLAGS_L);
+	}
+
+	@Test
+	void testSectionLengths() {
+		Tags metadata = Tags.builder().with("mycustommetadata", "mycustommetadatavalue")
+				.buildTags();
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("mycustomtag", "mycustomtagvalue")
+				.buildTags();
+		ByteBuf encoded = AddressFlyweight
+				.encode(ByteBufAllocator.DEFAULT, Id.random(), metadata, tags,
+						AddressFlyweight.FLAGS_U | AddressFlyweight.FLAGS_L);
+		assertThat(AddressFlyweight.metadataLength(encoded)).isEqualTo(TagsFlyweight.encodedLength(metadata));
+		assertThat(AddressFlyweight.tagsLength(encoded)).isEqualTo(TagsFlyweight.encodedLength(tags));
+		assertThat(AddressFlyweight.tagsOffset(encoded) + AddressFlyweight.tagsLength(encoded))
+				.isEqualTo(encoded.writerIndex());
+		encoded.release();
+	}
+
+	@Test
+	void testCanonicalTags() {
+		Tags tags = Tags.builder().with("zone", "a")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("cluster", "b")
+				.with(WellKnownKey.MAJOR_VERSION, "1")
+				.buildTags();
+		Tags reordered = Tags.builder().with(WellKnownKey.MAJOR_VERSION, "1")
+				.with("cluster", "b")
+				.with("zone", "a")
+				.with(WellKnownKey.SERVICE_NAME, "myservice")
+				.buildTags();
+		Tags metadata = Tags.builder().with("mycustommetadata", "mycustommetadatavalue")
+				.buildTags();
+		int flags = AddressFlyweight.FLAGS_U | AddressFlyweight.FLAGS_C | AddressFlyweight.FLAGS_L;
+
+		ByteBuf encoded = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), tags, flags);
+		ByteBuf other = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), metadata, reordered, flags);
+
+		assertThat(encoded.readableBytes()).isEqualTo(AddressFlyweight.encodedLength(Tags.empty(), tags, flags));
+		assertThat(AddressFlyweight.hasFingerprint(encoded)).isTrue();
+		assertThat(AddressFlyweight.fingerprint(encoded)).isEqualTo(AddressFlyweight.fingerprint(other))
+				.isEqualTo(TagsFlyweight.fingerprint(tags));
+		assertThat(AddressFlyweight.tagsEquals(encoded, other)).isTrue();
+		assertThat(AddressFlyweight.tags(encoded)).isEqualTo(tags);
+		assertThat(AddressFlyweight.tags(other).asMap().keySet()).extracting(key -> key.getWellKnownKey() != null
+				? key.getWellKnownKey().name() : key.getKey())
+				.containsExactly("SERVICE_NAME", "MAJOR_VERSION", "cluster", "zone");
+		assertThat(AddressFlyweight.metadata(other)).isEqualTo(metadata);
+
+		encoded.release();
+		other.release();
+	}
+
+	@Test
+	void testCanonicalDictionaryRejected() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice").buildTags();
+		assertThatIllegalArgumentException().isThrownBy(() -> AddressFlyweight.encode(ByteBufAllocator.DEFAULT,
+				Id.random(), Tags.empty(), tags, AddressFlyweight.FLAGS_C, new TagDictionary(4)));
+	}
+
+	@Test
+	void testFingerprintRequiresCanonical() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice").buildTags();
+		ByteBuf encoded = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), tags,
+				AddressFlyweight.FLAGS_U);
+		assertThat(AddressFlyweight.hasFingerprint(encoded)).isFalse();
+		assertThatIllegalStateException().isThrownBy(() -> AddressFlyweight.fingerprint(encoded));
+		encoded.release();
+	}
+
 	private void assertAddress(Tags metadata, Tags tags, int flags) {
 		Id originRouteId = Id.random();
 
 		ByteBuf encoded = AddressFlyweight
 				.encode(ByteBufAllocator.DEFAULT, originRouteId, metadata, tags, flags);
+		assertThat(encoded.readableBytes()).isEqualTo(AddressFlyweight.encodedLength(metadata, tags, flags))
+				.isEqualTo(encoded.capacity());
 		assertThat(FrameHeaderFlyweight.flags(encoded)).isEqualTo(flags);
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ADDRESS);
 		assertThat(AddressFlyweight.originRouteId(encoded)).isEqualTo(originRouteId);
-		// FIXME: assertThat(AddressFlyweight.metadata(encoded)).isEqualTo(metadata);
-		assertThat(AddressFlyweight.metadata(encoded)).isEqualTo(Tags.empty());
+		assertThat(AddressFlyweight.metadata(encoded)).isEqualTo(metadata);
 		assertThat(AddressFlyweight.tags(encoded)).isEqualTo(tags);
 	}
 
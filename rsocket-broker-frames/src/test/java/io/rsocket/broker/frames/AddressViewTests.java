@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AddressViewTests {
+
+	@Test
+	void testView() {
+		Id originRouteId = Id.random();
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with(WellKnownKey.MAJOR_VERSION, "1")
+				.with("mycustomtag", "mycustomtagvalue")
+				.with("myütf8tag", "myütf8value")
+				.buildTags();
+		int flags = AddressFlyweight.FLAGS_E | AddressFlyweight.FLAGS_M;
+		ByteBuf encoded = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, originRouteId, Tags.empty(), tags, flags);
+
+		AddressView view = AddressView.from(encoded);
+		assertThat(encoded.refCnt()).isEqualTo(2);
+		encoded.release();
+
+		assertThat(view.getOriginRouteId()).isEqualTo(originRouteId);
+		assertThat(view.getRoutingType()).isEqualTo(RoutingType.MULTICAST);
+		assertThat(view.isEncrypted()).isTrue();
+		assertThat(view.getTag(WellKnownKey.SERVICE_NAME)).isEqualTo("myservice");
+		assertThat(view.getTag(WellKnownKey.MAJOR_VERSION)).isEqualTo("1");
+		assertThat(view.getTag(WellKnownKey.MINOR_VERSION)).isNull();
+		assertThat(view.hasTag(WellKnownKey.MINOR_VERSION)).isFalse();
+		assertThat(view.getTag("mycustomtag")).isEqualTo("mycustomtagvalue");
+		assertThat(view.getTag("myütf8tag")).isEqualTo("myütf8value");
+		assertThat(view.hasTag("mycustomta")).isFalse();
+		assertThat(view.getTags()).isEqualTo(tags);
+
+		assertThat(view.release()).isTrue();
+		assertThat(encoded.refCnt()).isZero();
+	}
+
+	@Test
+	void testWrongFrameTypeFails() {
+		ByteBuf encoded = RouteRemoveFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Id.random(), 1, 0);
+		Assertions.assertThrows(IllegalArgumentException.class, () -> AddressView.from(encoded));
+		assertThat(encoded.refCnt()).isEqualTo(1);
+		encoded.release();
+	}
+
+}
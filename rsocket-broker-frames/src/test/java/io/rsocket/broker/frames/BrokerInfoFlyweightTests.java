@@ -37,6 +37,8 @@ class BrokerInfoFlyweightTests {
 				.buildTags();
 		ByteBuf encoded = BrokerInfoFlyweight
 				.encode(ByteBufAllocator.DEFAULT, brokerId, timestamp, tags, 0);
+		assertThat(encoded.readableBytes()).isEqualTo(BrokerInfoFlyweight.encodedLength(tags))
+				.isEqualTo(encoded.capacity());
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.BROKER_INFO);
 		assertThat(BrokerInfoFlyweight.brokerId(encoded)).isEqualTo(brokerId);
 		assertThat(BrokerInfoFlyweight.timestamp(encoded)).isEqualTo(timestamp);
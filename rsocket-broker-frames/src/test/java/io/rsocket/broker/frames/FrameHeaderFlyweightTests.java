@@ -18,6 +18,7 @@ package io.rsocket.broker.frames;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -34,4 +35,57 @@ class FrameHeaderFlyweightTests {
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ROUTE_SETUP);
 	}
 
+	@Test
+	void testPackedHeader() {
+		int flags = 0b01_0100_0000;
+		ByteBuf encoded = FrameHeaderFlyweight.encode(ByteBufAllocator.DEFAULT, FrameType.ADDRESS, flags);
+		// header only, shorter than a long
+		assertPackedHeader(encoded, flags);
+		// padded, read with a single long
+		encoded.writeLong(Long.MAX_VALUE);
+		assertPackedHeader(encoded, flags);
+		encoded.release();
+	}
+
+	@Test
+	void testDispatch() {
+		ByteBuf encoded = RouteRemoveFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Id.random(), 1, 0b11);
+		String handled = BrokerFrameHandler.dispatch(encoded, new BrokerFrameHandler<String>() {
+			@Override
+			public String onRouteSetup(ByteBuf byteBuf, int flags) {
+				return "setup";
+			}
+
+			@Override
+			public String onRouteJoin(ByteBuf byteBuf, int flags) {
+				return "join";
+			}
+
+			@Override
+			public String onRouteRemove(ByteBuf byteBuf, int flags) {
+				return "remove" + flags;
+			}
+
+			@Override
+			public String onBrokerInfo(ByteBuf byteBuf, int flags) {
+				return "info";
+			}
+
+			@Override
+			public String onAddress(ByteBuf byteBuf, int flags) {
+				return "address";
+			}
+		});
+		assertThat(handled).isEqualTo("remove3");
+		encoded.release();
+	}
+
+	private void assertPackedHeader(ByteBuf encoded, int flags) {
+		long header = FrameHeaderFlyweight.header(encoded, 0);
+		assertThat(FrameHeaderFlyweight.majorVersion(header)).isEqualTo(FrameHeaderFlyweight.MAJOR_VERSION);
+		assertThat(FrameHeaderFlyweight.minorVersion(header)).isEqualTo(FrameHeaderFlyweight.MINOR_VERSION);
+		assertThat(FrameHeaderFlyweight.frameType(header)).isEqualTo(FrameType.ADDRESS);
+		assertThat(FrameHeaderFlyweight.flags(header)).isEqualTo(flags);
+	}
+
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class RouteEventBatchFlyweightTests {
+
+	@Test
+	void testEncodeDecode() {
+		Id brokerId = Id.random();
+		long timestamp = System.currentTimeMillis();
+		Tags tags = Tags.builder().with(WellKnownKey.MAJOR_VERSION, "1")
+				.with("mycustomtag", "mycustomtagvalue")
+				.buildTags();
+		List<BrokerFrame> events = Arrays.asList(
+				new RouteJoin(brokerId, Id.random(), timestamp + 5, "myService", tags),
+				new RouteRemove(brokerId, Id.random(), timestamp - 3),
+				new RouteJoin(brokerId, Id.random(), timestamp, "myOtherService", Tags.empty()),
+				new RouteRemove(brokerId, Id.random(), timestamp + 1000));
+
+		ByteBuf encoded = RouteEventBatchFlyweight.encode(ByteBufAllocator.DEFAULT, brokerId, timestamp, events, 0);
+		assertThat(encoded.readableBytes()).isEqualTo(RouteEventBatchFlyweight.encodedLength(events))
+				.isEqualTo(encoded.capacity());
+		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ROUTE_EVENT_BATCH);
+		assertThat(RouteEventBatchFlyweight.brokerId(encoded)).isEqualTo(brokerId);
+		assertThat(RouteEventBatchFlyweight.timestamp(encoded)).isEqualTo(timestamp);
+		assertThat(RouteEventBatchFlyweight.count(encoded)).isEqualTo(4);
+		assertThat(RouteEventBatchFlyweight.events(encoded)).isEqualTo(events);
+		assertThat(RouteEventBatch.from(encoded))
+				.isEqualTo(new RouteEventBatch(brokerId, timestamp, events));
+		encoded.release();
+	}
+
+	@Test
+	void testEncodeEmpty() {
+		Id brokerId = Id.random();
+		ByteBuf encoded = RouteEventBatchFlyweight.encode(ByteBufAllocator.DEFAULT, brokerId, 1L,
+				List.of(), 0);
+		assertThat(RouteEventBatchFlyweight.count(encoded)).isZero();
+		assertThat(RouteEventBatchFlyweight.events(encoded)).isEmpty();
+		encoded.release();
+	}
+
+	@Test
+	void testForeignBrokerIdRejected() {
+		List<BrokerFrame> events = List.of(new RouteRemove(Id.random(), Id.random(), 1L));
+		assertThatIllegalArgumentException().isThrownBy(() -> RouteEventBatchFlyweight
+				.encode(ByteBufAllocator.DEFAULT, Id.random(), 1L, events, 0));
+	}
+
+}
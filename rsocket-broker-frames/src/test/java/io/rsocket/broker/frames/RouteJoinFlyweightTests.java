@@ -39,6 +39,8 @@ class RouteJoinFlyweightTests {
 				.buildTags();
 		ByteBuf encoded = RouteJoinFlyweight
 				.encode(ByteBufAllocator.DEFAULT, brokerId, routeId, timestamp, serviceName, tags, 0);
+		assertThat(encoded.readableBytes()).isEqualTo(RouteJoinFlyweight.encodedLength(serviceName, tags))
+				.isEqualTo(encoded.capacity());
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ROUTE_JOIN);
 		assertThat(RouteJoinFlyweight.brokerId(encoded)).isEqualTo(brokerId);
 		assertThat(RouteJoinFlyweight.routeId(encoded)).isEqualTo(routeId);
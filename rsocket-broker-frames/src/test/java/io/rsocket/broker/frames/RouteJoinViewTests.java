@@ -0,0 +1,56 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteJoinViewTests {
+
+	@Test
+	void testView() {
+		Id brokerId = Id.random();
+		Id routeId = Id.random();
+		long timestamp = System.currentTimeMillis();
+		Tags tags = Tags.builder().with(WellKnownKey.ZONE, "us-east-1a")
+				.with("mycustomtag", "mycustomtagvalue")
+				.buildTags();
+		ByteBuf encoded = RouteJoinFlyweight
+				.encode(ByteBufAllocator.DEFAULT, brokerId, routeId, timestamp, "myService", tags, 0);
+
+		RouteJoinView view = RouteJoinView.from(encoded);
+		encoded.release();
+
+		assertThat(view.getFrameType()).isEqualTo(FrameType.ROUTE_JOIN);
+		assertThat(view.getBrokerId()).isEqualTo(brokerId);
+		assertThat(view.getRouteId()).isEqualTo(routeId);
+		assertThat(view.getTimestamp()).isEqualTo(timestamp);
+		assertThat(view.getServiceName()).isEqualTo("myService");
+		assertThat(view.getTag(WellKnownKey.ZONE)).isEqualTo("us-east-1a");
+		assertThat(view.getTag("mycustomtag")).isEqualTo("mycustomtagvalue");
+		assertThat(view.getTags()).isEqualTo(tags);
+
+		view.release();
+	}
+
+}
@@ -33,6 +33,8 @@ class RouteRemoveFlyweightTests {
 
 		ByteBuf encoded = RouteRemoveFlyweight
 				.encode(ByteBufAllocator.DEFAULT, brokerId, routeId, timestamp, 0);
+		assertThat(encoded.readableBytes()).isEqualTo(RouteRemoveFlyweight.encodedLength())
+				.isEqualTo(encoded.capacity());
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ROUTE_REMOVE);
 		assertThat(RouteRemoveFlyweight.brokerId(encoded)).isEqualTo(brokerId);
 		assertThat(RouteRemoveFlyweight.routeId(encoded)).isEqualTo(routeId);
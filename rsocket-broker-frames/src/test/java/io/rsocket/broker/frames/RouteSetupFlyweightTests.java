@@ -53,6 +53,8 @@ class RouteSetupFlyweightTests {
 				.buildTags();
 		ByteBuf encoded = RouteSetupFlyweight
 				.encode(ByteBufAllocator.DEFAULT, routeId, serviceName, tags, 0);
+		assertThat(encoded.readableBytes()).isEqualTo(RouteSetupFlyweight.encodedLength(serviceName, tags))
+				.isEqualTo(encoded.capacity());
 		assertThat(FrameHeaderFlyweight.frameType(encoded)).isEqualTo(FrameType.ROUTE_SETUP);
 		assertThat(RouteSetupFlyweight.routeId(encoded)).isEqualTo(routeId);
 		assertThat(RouteSetupFlyweight.serviceName(encoded)).isEqualTo(serviceName);
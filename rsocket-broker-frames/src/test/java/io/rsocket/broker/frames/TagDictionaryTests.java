@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Key;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class TagDictionaryTests {
+
+	private static final Tags TAGS = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+			.with("mycustomtag", "mycustomtagvalue")
+			.with(WellKnownKey.REGION, "us-east-1")
+			.buildTags();
+
+	@Test
+	void testRepeatedTagsAreIndexed() {
+		TagDictionary encoder = new TagDictionary(16);
+		TagDictionary decoder = new TagDictionary(16);
+		Id originRouteId = Id.random();
+
+		ByteBuf first = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, originRouteId, Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, encoder);
+		ByteBuf second = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, originRouteId, Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, encoder);
+
+		assertThat(FrameHeaderFlyweight.flags(first) & AddressFlyweight.FLAGS_D).isEqualTo(AddressFlyweight.FLAGS_D);
+		assertThat(first.readableBytes())
+				.isEqualTo(AddressFlyweight.encodedLength(Tags.empty(), TAGS, AddressFlyweight.FLAGS_D));
+		// the dictionary position and three tags of one marker and one index byte each
+		assertThat(second.readableBytes())
+				.isEqualTo(FrameHeaderFlyweight.BYTES + FlyweightUtils.ID_BYTES + Integer.BYTES + 3 * 2);
+		assertThat(encoder.size()).isEqualTo(3);
+
+		assertThat(AddressFlyweight.tags(first, decoder, null)).isEqualTo(TAGS);
+		assertThat(AddressFlyweight.tags(second, decoder, null)).isEqualTo(TAGS);
+		assertThat(decoder.size()).isEqualTo(3);
+
+		first.release();
+		second.release();
+	}
+
+	@Test
+	void testTwoByteIndex() {
+		TagDictionary encoder = new TagDictionary(128);
+		TagDictionary decoder = new TagDictionary(128);
+		Tags.Builder<?> builder = Tags.builder();
+		for (int i = 0; i < 100; i++) {
+			builder.with("key" + i, "value" + i);
+		}
+		Tags tags = builder.buildTags();
+
+		ByteBuf first = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), tags, encoder);
+		int position = encoder.position();
+		ByteBuf second = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), tags, encoder);
+
+		assertThat(TagsFlyweight.decode(0, first, decoder, 0, null)).isEqualTo(tags);
+		assertThat(TagsFlyweight.decode(0, second, decoder, position, null)).isEqualTo(tags);
+		assertThat(TagsFlyweight.length(0, second)).isEqualTo(second.readableBytes());
+
+		first.release();
+		second.release();
+	}
+
+	@Test
+	void testLostFrameIsDetected() {
+		TagDictionary encoder = new TagDictionary(16);
+		TagDictionary decoder = new TagDictionary(16);
+		Tags other = Tags.builder().with(WellKnownKey.SERVICE_NAME, "otherservice").buildTags();
+
+		ByteBuf first = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, encoder);
+		// encoded but never sent
+		AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), other,
+				AddressFlyweight.FLAGS_U, encoder).release();
+		ByteBuf third = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), other,
+				AddressFlyweight.FLAGS_U | AddressFlyweight.FLAGS_L, encoder);
+
+		assertThat(AddressFlyweight.tags(first, decoder, null)).isEqualTo(TAGS);
+		assertThatIllegalStateException().isThrownBy(() -> AddressFlyweight.tags(third, decoder, null))
+				.withMessageContaining("out of sync");
+		assertThat(decoder.position()).isEqualTo(3);
+
+		first.release();
+		third.release();
+	}
+
+	@Test
+	void testEviction() {
+		TagDictionary dictionary = new TagDictionary(2);
+		dictionary.insert(Key.of("a"), "1");
+		dictionary.insert(Key.of("b"), "2");
+		assertThat(dictionary.indexOf(Key.of("a"), "1")).isEqualTo(1);
+		assertThat(dictionary.indexOf(Key.of("b"), "2")).isEqualTo(0);
+
+		dictionary.insert(Key.of("c"), "3");
+		assertThat(dictionary.size()).isEqualTo(2);
+		assertThat(dictionary.indexOf(Key.of("a"), "1")).isEqualTo(-1);
+		assertThat(dictionary.indexOf(Key.of("c"), "3")).isEqualTo(0);
+		assertThat(dictionary.key(1)).isEqualTo(Key.of("b"));
+		assertThat(dictionary.value(1)).isEqualTo("2");
+	}
+
+	@Test
+	void testDictionaryRequired() {
+		ByteBuf encoded = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, new TagDictionary(4));
+		assertThatIllegalStateException().isThrownBy(() -> AddressFlyweight.tags(encoded));
+		encoded.release();
+	}
+
+	@Test
+	void testIndexedTagsRejectedInPlace() {
+		TagDictionary encoder = new TagDictionary(16);
+		AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, encoder).release();
+		ByteBuf indexed = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U, encoder);
+		int tagsOffset = AddressFlyweight.tagsOffset(indexed);
+		AddressView view = AddressView.from(indexed);
+
+		assertThatIllegalStateException().isThrownBy(() -> view.getTag(WellKnownKey.SERVICE_NAME));
+		assertThatIllegalStateException().isThrownBy(() -> view.hasTag("mycustomtag"));
+		assertThatIllegalStateException().isThrownBy(view::getTags);
+		assertThatIllegalStateException().isThrownBy(() -> new TagCursor().wrap(indexed, tagsOffset).next());
+		assertThatIllegalStateException()
+				.isThrownBy(() -> TagsFlyweight.forEach(tagsOffset, indexed, (buf, k, ko, kl, vo, vl) -> true));
+
+		view.release();
+		indexed.release();
+	}
+
+	@Test
+	void testReencodeWithoutDictionaryClearsFlag() {
+		ByteBuf encoded = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Tags.empty(), TAGS,
+				AddressFlyweight.FLAGS_U | AddressFlyweight.FLAGS_D);
+
+		assertThat(FrameHeaderFlyweight.flags(encoded) & AddressFlyweight.FLAGS_D).isZero();
+		assertThat(AddressFlyweight.tags(encoded)).isEqualTo(TAGS);
+		encoded.release();
+	}
+
+	@Test
+	void testRouteSetupCapacity() {
+		ByteBuf encoded = RouteSetupFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), "myService", TAGS, 0, 256);
+		assertThat(RouteSetupFlyweight.tagDictionaryCapacity(encoded)).isEqualTo(256);
+		assertThat(RouteSetupFlyweight.serviceName(encoded)).isEqualTo("myService");
+		assertThat(RouteSetupFlyweight.tags(encoded)).isEqualTo(TAGS);
+		assertThat(encoded.readableBytes()).isEqualTo(encoded.capacity());
+		assertThat(RouteSetup.from(encoded).getTagDictionaryCapacity()).isEqualTo(256);
+		encoded.release();
+	}
+
+}
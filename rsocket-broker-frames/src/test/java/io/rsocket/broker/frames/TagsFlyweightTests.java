@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TagsFlyweightTests {
+
+	private static final Tags TAGS = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+			.with("mycustomtag", "mycustomtagvalue")
+			.with(WellKnownKey.ZONE, "us-east-1a")
+			.buildTags();
+
+	@Test
+	void testForEach() {
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), TAGS);
+		List<String> visited = new ArrayList<>();
+
+		int end = TagsFlyweight.forEach(0, byteBuf, (buf, wellKnownKey, keyOffset, keyLength, valueOffset, valueLength) -> {
+			String key = wellKnownKey != null ? wellKnownKey.name() : buf.toString(keyOffset, keyLength, StandardCharsets.UTF_8);
+			visited.add(key + "=" + buf.toString(valueOffset, valueLength, StandardCharsets.UTF_8));
+			return true;
+		});
+
+		// tags iterate well known keys first
+		assertThat(visited).containsExactly("SERVICE_NAME=myservice", "ZONE=us-east-1a", "mycustomtag=mycustomtagvalue");
+		assertThat(end).isEqualTo(byteBuf.writerIndex()).isEqualTo(TagsFlyweight.length(0, byteBuf));
+		byteBuf.release();
+	}
+
+	@Test
+	void testForEachStops() {
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), TAGS);
+		List<WellKnownKey> visited = new ArrayList<>();
+
+		TagsFlyweight.forEach(0, byteBuf, (buf, wellKnownKey, keyOffset, keyLength, valueOffset, valueLength) -> {
+			visited.add(wellKnownKey);
+			return wellKnownKey == null;
+		});
+
+		assertThat(visited).containsExactly(WellKnownKey.SERVICE_NAME);
+		byteBuf.release();
+	}
+
+	@Test
+	void testCursor() {
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), TAGS);
+		TagCursor cursor = new TagCursor().wrap(byteBuf, 0);
+
+		assertThat(cursor.next()).isTrue();
+		assertThat(cursor.wellKnownKey()).isEqualTo(WellKnownKey.SERVICE_NAME);
+		assertThat(cursor.valueEquals("myservice")).isTrue();
+		assertThat(cursor.key()).isNull();
+
+		assertThat(cursor.next()).isTrue();
+		assertThat(cursor.wellKnownKey()).isEqualTo(WellKnownKey.ZONE);
+		assertThat(cursor.valueEquals("us-east-1b")).isFalse();
+
+		assertThat(cursor.next()).isTrue();
+		assertThat(cursor.isWellKnownKey()).isFalse();
+		assertThat(cursor.keyEquals("mycustomtag")).isTrue();
+		assertThat(cursor.keyEquals("mycustomta")).isFalse();
+		assertThat(cursor.value()).isEqualTo("mycustomtagvalue");
+
+		assertThat(cursor.next()).isFalse();
+		assertThat(cursor.offset()).isEqualTo(byteBuf.writerIndex());
+
+		// reusable
+		assertThat(cursor.wrap(byteBuf, byteBuf.writerIndex()).next()).isFalse();
+		byteBuf.release();
+	}
+
+	@Test
+	void testEncodeSkipsInvalidLastTag() {
+		// custom keys iterate last, the empty value is skipped
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("mycustomtag", "").buildTags();
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), tags);
+
+		assertThat(byteBuf.readableBytes()).isEqualTo(TagsFlyweight.encodedLength(tags))
+				.isEqualTo(TagsFlyweight.length(0, byteBuf));
+		assertThat(TagsFlyweight.decode(0, byteBuf))
+				.isEqualTo(Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice").buildTags());
+		byteBuf.release();
+	}
+
+	@Test
+	void testDictionaryEncodeSkipsInvalidLastTag() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("mycustomtag", "").buildTags();
+		TagDictionary encoder = new TagDictionary(16);
+		TagDictionary decoder = new TagDictionary(16);
+		ByteBuf byteBuf = ByteBufAllocator.DEFAULT.buffer();
+		TagsFlyweight.encode(byteBuf, tags, encoder);
+		int first = byteBuf.writerIndex();
+		TagsFlyweight.encode(byteBuf, tags, encoder);
+
+		assertThat(first).isEqualTo(TagsFlyweight.encodedLength(tags));
+		// only the service name was added to the dictionary
+		assertThat(TagsFlyweight.decode(0, byteBuf, decoder, 0, null))
+				.isEqualTo(TagsFlyweight.decode(first, byteBuf, decoder, 1, null))
+				.isEqualTo(Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice").buildTags());
+		byteBuf.release();
+	}
+
+	@Test
+	void testFingerprintMatchesEncodedBytes() {
+		Tags tags = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with("äpfel", "\u20ac \uD83D\uDE00 \uD800")
+				.with("mycustomtag", "").buildTags();
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), tags);
+
+		assertThat(TagsFlyweight.fingerprint(tags))
+				.isEqualTo(TagsFlyweight.fingerprint(byteBuf, 0, byteBuf.writerIndex()));
+		byteBuf.release();
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TagsMatcherTests {
+
+	private static final Tags TAGS = Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+			.with("mycustomtag", "mycustomtagvalue")
+			.with(WellKnownKey.ZONE, "us-east-1a")
+			.buildTags();
+
+	@Test
+	void exact() {
+		TagsMatcher matcher = TagsMatcher.exact(TAGS);
+
+		assertMatches(matcher, TAGS, true);
+		assertMatches(matcher, Tags.builder().with(TAGS).with(WellKnownKey.REGION, "us-east-1").buildTags(), false);
+		assertMatches(matcher, Tags.builder().with(TAGS).with("other", "value").buildTags(), false);
+		assertMatches(matcher, Tags.builder().with(WellKnownKey.SERVICE_NAME, "myservice")
+				.with(WellKnownKey.ZONE, "us-east-1a").buildTags(), false);
+	}
+
+	@Test
+	void subset() {
+		TagsMatcher matcher = TagsMatcher.subset(Tags.builder().with(WellKnownKey.ZONE, "us-east-1a")
+				.with("mycustomtag", "mycustomtagvalue").buildTags());
+
+		assertMatches(matcher, TAGS, true);
+		assertMatches(matcher, Tags.builder().with(TAGS).with(WellKnownKey.ZONE, "us-east-1b").buildTags(), false);
+		assertMatches(matcher, Tags.builder().with(WellKnownKey.ZONE, "us-east-1a").buildTags(), false);
+		assertMatches(matcher, Tags.empty(), false);
+		assertMatches(TagsMatcher.any(), TAGS, true);
+		assertMatches(TagsMatcher.any(), Tags.empty(), true);
+	}
+
+	@Test
+	void anyOf() {
+		TagsMatcher matcher = TagsMatcher.builder()
+				.with(WellKnownKey.ZONE, "us-east-1b", "us-east-1a")
+				.with("mycustomtag", "other", "mycustomtagvalue")
+				.build();
+
+		assertMatches(matcher, TAGS, true);
+		assertMatches(matcher, Tags.builder().with(TAGS).with(WellKnownKey.ZONE, "us-east-1b").buildTags(), true);
+		assertMatches(matcher, Tags.builder().with(TAGS).with(WellKnownKey.ZONE, "us-east-1c").buildTags(), false);
+		assertMatches(matcher, Tags.builder().with(TAGS).with("mycustomtag", "mycustomtagvalu").buildTags(), false);
+	}
+
+	@Test
+	void matchesAddress() {
+		Address address = Address.from(Id.random()).with(TAGS).withMetadata("mymetadata", "value")
+				.lengthPrefixed().build();
+		ByteBuf byteBuf = AddressFlyweight.encode(ByteBufAllocator.DEFAULT, address.getOriginRouteId(),
+				address.getMetadata(), address.getTags(), address.getFlags());
+
+		assertThat(TagsMatcher.subset(address).matchesAddress(byteBuf)).isTrue();
+		assertThat(TagsMatcher.builder().with(WellKnownKey.SERVICE_NAME, "myservice").build()
+				.matchesAddress(byteBuf)).isTrue();
+		assertThat(TagsMatcher.builder().with("mymetadata", "value").build().matchesAddress(byteBuf)).isFalse();
+		byteBuf.release();
+	}
+
+	@Test
+	void dictionaryCodedTagsAreRejected() {
+		TagDictionary dictionary = new TagDictionary(16);
+		ByteBuf first = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), TAGS, dictionary);
+		ByteBuf second = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), TAGS, dictionary);
+
+		assertThat(TagsMatcher.subset(TAGS).matches(0, first)).isTrue();
+		assertThatThrownBy(() -> TagsMatcher.subset(TAGS).matches(0, second))
+				.isInstanceOf(IllegalStateException.class);
+		first.release();
+		second.release();
+	}
+
+	private static void assertMatches(TagsMatcher matcher, Tags tags, boolean expected) {
+		assertThat(matcher.matches(tags)).as("%s matches %s", matcher, tags).isEqualTo(expected);
+		ByteBuf byteBuf = TagsFlyweight.encode(ByteBufAllocator.DEFAULT.buffer(), tags);
+		try {
+			assertThat(matcher.matches(0, byteBuf)).as("%s matches encoded %s", matcher, tags).isEqualTo(expected);
+		}
+		finally {
+			byteBuf.release();
+		}
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2020 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.rsocket.broker.frames;
+
+import java.nio.charset.StandardCharsets;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.broker.common.Id;
+import io.rsocket.broker.common.Key;
+import io.rsocket.broker.common.Tags;
+import io.rsocket.broker.common.WellKnownKey;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Utf8InternCacheTests {
+
+	@Test
+	void testIntern() {
+		Utf8InternCache cache = new Utf8InternCache(16);
+		ByteBuf first = Unpooled.copiedBuffer("xxmyvalue", StandardCharsets.UTF_8);
+		ByteBuf second = Unpooled.copiedBuffer("myvalue", StandardCharsets.UTF_8);
+
+		String value = cache.intern(first, 2, 7);
+		assertThat(value).isEqualTo("myvalue");
+		assertThat(cache.intern(second, 0, 7)).isSameAs(value);
+		assertThat(cache.intern(second, 0, 6)).isEqualTo("myvalu");
+		assertThat(cache.intern(second, 0, 0)).isEmpty();
+	}
+
+	@Test
+	void testInternKey() {
+		Utf8InternCache cache = new Utf8InternCache(16);
+		ByteBuf byteBuf = Unpooled.copiedBuffer("mykey", StandardCharsets.UTF_8);
+
+		Key key = cache.internKey(byteBuf, 0, 5);
+		assertThat(key).isEqualTo(Key.of("mykey"));
+		assertThat(cache.internKey(byteBuf, 0, 5)).isSameAs(key);
+	}
+
+	@Test
+	void testBounded() {
+		Utf8InternCache cache = new Utf8InternCache(8);
+		assertThat(cache.capacity()).isEqualTo(8);
+		for (int i = 0; i < 1000; i++) {
+			ByteBuf byteBuf = Unpooled.copiedBuffer("value" + i, StandardCharsets.UTF_8);
+			assertThat(cache.intern(byteBuf, 0, byteBuf.readableBytes())).isEqualTo("value" + i);
+		}
+	}
+
+	@Test
+	void testDecodeReturnsCanonicalInstances() {
+		Utf8InternCache cache = new Utf8InternCache();
+		Tags tags = Tags.builder().with(WellKnownKey.REGION, "us-east-1")
+				.with("mycustomtag", "mycustomtagvalue")
+				.buildTags();
+		ByteBuf first = RouteJoinFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Id.random(),
+				System.currentTimeMillis(), "myService", tags, 0);
+		ByteBuf second = RouteJoinFlyweight.encode(ByteBufAllocator.DEFAULT, Id.random(), Id.random(),
+				System.currentTimeMillis(), "myService", tags, 0);
+
+		RouteJoin firstJoin = RouteJoin.from(first, cache);
+		RouteJoin secondJoin = RouteJoin.from(second, cache);
+
+		assertThat(firstJoin.getTags()).isEqualTo(tags);
+		assertThat(secondJoin.getServiceName()).isSameAs(firstJoin.getServiceName());
+		assertThat(secondJoin.getTags().get(WellKnownKey.REGION)).isSameAs(firstJoin.getTags().get(WellKnownKey.REGION));
+		assertThat(secondJoin.getTags().get("mycustomtag")).isSameAs(firstJoin.getTags().get("mycustomtag"));
+		first.release();
+		second.release();
+	}
+
+}